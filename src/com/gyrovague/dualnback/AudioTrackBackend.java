@@ -0,0 +1,203 @@
+/**
+ * Stream decoded consonants from memory through an AudioTrack.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * Plays samples out of a PcmCache.  The decode happens at build time (this
+ * API level has no public decoder), load() slices the consonants in use
+ * out of the mapped SampleBank, and play() only hands an index to a
+ * streaming thread.
+ *
+ * AudioTrack at this API level can only be written from a byte[], so the
+ * streaming thread copies each sample through one reused chunk buffer.
+ *
+ * @author asimihsan
+ *
+ */
+class AudioTrackBackend implements SoundBackend {
+    private static final String TAG = "AudioTrackBackend";
+
+    private final Context mContext;
+    private final PcmCache mCache;
+    private AudioTrack mTrack;
+    private HandlerThread mStreamThread;
+    private Handler mStreamHandler;
+    private HandlerThread mOnsetThread;
+    private volatile OnsetListener mOnsetListener;
+    private byte[] mChunk;
+
+    /**
+     * Written by the owning thread, read by the streaming thread.  Bumping
+     * the generation abandons whatever is being streamed.
+     */
+    private volatile int mRequestedIndex = -1;
+    private volatile int mGeneration;
+
+    private final Runnable mStream = new Runnable() {
+        public void run() {
+            stream();
+        }
+    };
+
+    private final Runnable mHalt = new Runnable() {
+        public void run() {
+            if (mTrack != null) {
+                mTrack.pause();
+                mTrack.flush();
+            }
+        }
+    };
+
+    AudioTrackBackend(Context context, PcmCache cache) {
+        this.mContext = context;
+        this.mCache = cache;
+    }
+
+    public boolean load(int[] consonants) {
+        final String SUB_TAG = "::load()";
+        Resources resources = mContext.getResources();
+        SampleBank bank;
+        try {
+            bank = SampleBank.get(mContext);
+        } catch (IOException e) {
+            Log.e(TAG + SUB_TAG, "Could not map " + SampleBank.ASSET_NAME, e);
+            return false;
+        }
+        mCache.reset(consonants.length, bank.getSampleRate(), bank.getChannels());
+        for (int i = 0; i < consonants.length; i++) {
+            String name = resources.getResourceEntryName(consonants[i]);
+            ByteBuffer sample = bank.getSample(SampleBank.indexOf(name));
+            if (sample == null) {
+                Log.e(TAG + SUB_TAG, SampleBank.ASSET_NAME + " has no sample for " + name);
+                return false;
+            }
+            mCache.put(i, sample);
+        }
+        Log.d(TAG + SUB_TAG, "PCM cache footprint: " + mCache.getFootprintBytes() + " of "
+              + bank.getMappedBytes() + " mapped bytes");
+
+        int channelConfig = (mCache.getChannels() == 1) ? AudioFormat.CHANNEL_CONFIGURATION_MONO
+                                                        : AudioFormat.CHANNEL_CONFIGURATION_STEREO;
+        int bufferSize = AudioTrack.getMinBufferSize(mCache.getSampleRate(), channelConfig, AudioFormat.ENCODING_PCM_16BIT);
+        if (bufferSize <= 0) {
+            Log.e(TAG + SUB_TAG, "Unsupported PCM format " + mCache.getSampleRate() + "Hz/" + mCache.getChannels());
+            return false;
+        }
+        mTrack = new AudioTrack(AudioManager.STREAM_MUSIC, mCache.getSampleRate(), channelConfig,
+                                AudioFormat.ENCODING_PCM_16BIT, bufferSize, AudioTrack.MODE_STREAM);
+        if (mTrack.getState() != AudioTrack.STATE_INITIALIZED) {
+            release();
+            return false;
+        }
+        mChunk = new byte[bufferSize];
+
+        // marker callbacks get their own thread, since the streaming thread
+        // is blocked in write() for the whole sample.
+        mOnsetThread = new HandlerThread(TAG + "Onset");
+        mOnsetThread.start();
+        mTrack.setPlaybackPositionUpdateListener(new AudioTrack.OnPlaybackPositionUpdateListener() {
+            public void onMarkerReached(AudioTrack track) {
+                long now = System.nanoTime();
+                OnsetListener listener = mOnsetListener;
+                if (listener != null) {
+                    listener.onOnset(now);
+                }
+            }
+
+            public void onPeriodicNotification(AudioTrack track) {
+            }
+        }, new Handler(mOnsetThread.getLooper()));
+
+        mStreamThread = new HandlerThread(TAG);
+        mStreamThread.start();
+        mStreamHandler = new Handler(mStreamThread.getLooper());
+        return true;
+    }
+
+    public void setOnsetListener(OnsetListener listener) {
+        mOnsetListener = listener;
+    }
+
+    public void play(int index) {
+        mRequestedIndex = index;
+        mGeneration++;
+        mStreamHandler.post(mStream);
+    }
+
+    public void prefetch(int index) {
+        // every consonant is already resident.
+    }
+
+    public void stop() {
+        mRequestedIndex = -1;
+        mGeneration++;
+        if (mStreamHandler != null) {
+            mStreamHandler.post(mHalt);
+        }
+    }
+
+    public void release() {
+        if (mStreamThread != null) {
+            mGeneration++;
+            mStreamThread.getLooper().quit();
+            try {
+                mStreamThread.join();
+            } catch (InterruptedException e) {
+                Log.e(TAG + "::release()", "Interrupted waiting for stream thread", e);
+            }
+            mStreamThread = null;
+            mStreamHandler = null;
+        }
+        if (mOnsetThread != null) {
+            mOnsetThread.getLooper().quit();
+            mOnsetThread = null;
+        }
+        if (mTrack != null) {
+            mTrack.release();
+            mTrack = null;
+        }
+        mChunk = null;
+    }
+
+    /**
+     * Runs on the streaming thread.
+     */
+    private void stream() {
+        final int generation = mGeneration;
+        final int index = mRequestedIndex;
+        if (index < 0) {
+            return;
+        }
+        ByteBuffer sample = mCache.get(index);
+        sample.position(0);
+
+        mTrack.pause();
+        mTrack.flush();
+        // flush() rewinds the playback head, so the first frame played reports onset.
+        mTrack.setNotificationMarkerPosition(1);
+        mTrack.play();
+        while (sample.hasRemaining() && (generation == mGeneration)) {
+            int length = Math.min(mChunk.length, sample.remaining());
+            sample.get(mChunk, 0, length);
+            mTrack.write(mChunk, 0, length);
+        }
+        if (generation == mGeneration) {
+            // plays out whatever is still buffered, then stops.
+            mTrack.stop();
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * One block's worth of generated stimuli.
+ */
+package com.gyrovague.dualnback;
+
+/**
+ * The stimuli of a block, generated for a particular N, and the answer to
+ * every trial.  Answers are computed once here: a Guess bitmask per trial,
+ * and one bitset per modality with a bit set for each target trial, from
+ * which the per-block target counts are popcounts.
+ *
+ * Never modified once generated, so a block built on a worker thread can be
+ * handed to the game thread through a Future.
+ *
+ * @author asimihsan
+ *
+ */
+final class Block {
+    final int nInterval;
+    final StimulusHistory history;
+
+    /**
+     * Where the stimuli came from: a DayPlan SOURCE_ constant and the
+     * identity of the generator or library.
+     */
+    final int source;
+    final long sourceId;
+
+    /**
+     * Correct Guess for each trial; Guess.NONE for the first nInterval.
+     */
+    final byte[] answers;
+    private final long[] mVisualTargets;
+    private final long[] mAudioTargets;
+
+    Block(int nInterval, StimulusHistory history, int source, long sourceId) {
+        this.nInterval = nInterval;
+        this.history = history;
+        this.source = source;
+        this.sourceId = sourceId;
+
+        final int length = history.size();
+        answers = new byte[length];
+        mVisualTargets = new long[(length + 63) >>> 6];
+        mAudioTargets = new long[mVisualTargets.length];
+        for (int trial = nInterval; trial < length; trial++) {
+            int answer = history.getMatches(trial, nInterval);
+            answers[trial] = (byte) answer;
+            if ((answer & Guess.VISUAL) != 0) {
+                mVisualTargets[trial >>> 6] |= 1L << trial;
+            }
+            if ((answer & Guess.AUDIO) != 0) {
+                mAudioTargets[trial >>> 6] |= 1L << trial;
+            }
+        }
+    } // Block(int nInterval, StimulusHistory history, int source, long sourceId)
+
+    int getLength() {
+        return answers.length;
+    }
+
+    /**
+     * @return Trials that are visual targets, including those that are also audio targets.
+     */
+    int getVisualTargetCount() {
+        int count = 0;
+        for (long word : mVisualTargets) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return Trials that are audio targets, including those that are also visual targets.
+     */
+    int getAudioTargetCount() {
+        int count = 0;
+        for (long word : mAudioTargets) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return Trials that are targets in both modalities.
+     */
+    int getBothTargetCount() {
+        int count = 0;
+        for (int i = 0; i < mVisualTargets.length; i++) {
+            count += Long.bitCount(mVisualTargets[i] & mAudioTargets[i]);
+        }
+        return count;
+    }
+}
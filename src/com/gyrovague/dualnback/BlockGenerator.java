@@ -0,0 +1,286 @@
+/**
+ * Generates the stimuli of a block.
+ */
+package com.gyrovague.dualnback;
+
+import com.gyrovague.dualnback.random.RandomSource;
+
+import ec.util.SplitMix64;
+
+/**
+ * A block is nInterval random lead-in trials followed by blockSize slots.
+ * Every slot is laid out up front as exactly one of non-target, audio-only,
+ * visual-only or both target, in the required numbers, and the layout is
+ * Fisher-Yates shuffled once.  Each slot then copies or avoids the stimulus
+ * nInterval trials back, drawing an avoiding value with a single bounded
+ * draw, so generation is linear in the block length and the target counts
+ * are exact.  Without lure avoidance the bound is the same for every
+ * trial, so those draws are made in bulk with RandomSource.fillInts().
+ *
+ * Optionally the generator also avoids lures: a scored trial whose stimulus
+ * repeats the one N-1 or N+1 trials back in a modality where it is not a
+ * target.  Avoiding values are then drawn from the stimuli minus up to
+ * three excluded ones, still with one bounded call.
+ *
+ * Memory is the history being filled plus one byte of slot layout and two
+ * ints of draws per trial, so blocks of GameConfig.MAX_BLOCK_SIZE trials
+ * generate in linear time.
+ *
+ * Holds no mutable state, so one instance can be used from several threads
+ * as long as each uses its own RNG.
+ *
+ * @author asimihsan
+ *
+ */
+public final class BlockGenerator {
+    /**
+     * Version of the way a seed becomes a block; part of getIdentity().
+     * Bump it whenever the same seed would give a different block.
+     * 1: one RandomSource.nextInt() per draw.
+     * 2: multiply-shift bounded draws, fixed-bound ones in bulk with fillInts().
+     * 3: lure-avoiding draws with one value to avoid use nextIntExcept().
+     */
+    public static final int VERSION = 3;
+
+    private static final byte NON_TARGET       = 0;
+    private static final byte AUDIO_TARGET     = Guess.AUDIO;
+    private static final byte VISUAL_TARGET    = Guess.VISUAL;
+    private static final byte BOTH_TARGETS     = Guess.BOTH;
+
+    private final int mBlockSize;
+    private final int mAudioOnlyTargets;
+    private final int mVisualOnlyTargets;
+    private final int mBothTargets;
+    private final int mNumSquares;
+    private final int mNumConsonants;
+    private final boolean mAvoidLures;
+
+    /**
+     * Identity of the blocks this generator makes, for DayPlan: two
+     * generators with the same identity give the same block for a seed.
+     */
+    private final long mIdentity;
+
+    /**
+     * Fewest distinct stimuli that leave a value to draw when avoiding a
+     * target and both lures.
+     */
+    private static final int MIN_STIMULI_AVOIDING_LURES = 4;
+
+    /**
+     * @param config Block size and target counts.
+     * @param numSquares Number of distinct visual stimuli, in [2, StimulusHistory.MAX_STIMULUS + 1].
+     * @param numConsonants Number of distinct audio stimuli, in [2, StimulusHistory.MAX_STIMULUS + 1].
+     */
+    public BlockGenerator(GameConfig config, int numSquares, int numConsonants) {
+        this(config, numSquares, numConsonants, false);
+    }
+
+    /**
+     * @param config Block size and target counts.
+     * @param numSquares Number of distinct visual stimuli, in [2, StimulusHistory.MAX_STIMULUS + 1].
+     * @param numConsonants Number of distinct audio stimuli, in [2, StimulusHistory.MAX_STIMULUS + 1].
+     * @param avoidLures Generate lure-free blocks; needs at least four of each stimulus.
+     */
+    public BlockGenerator(GameConfig config, int numSquares, int numConsonants, boolean avoidLures) {
+        if (avoidLures && ((numSquares < MIN_STIMULI_AVOIDING_LURES) || (numConsonants < MIN_STIMULI_AVOIDING_LURES))) {
+            throw new IllegalArgumentException("avoiding lures needs at least " + MIN_STIMULI_AVOIDING_LURES + " stimuli");
+        }
+        if ((numSquares < 2) || (numSquares > StimulusHistory.MAX_STIMULUS + 1) ||
+                (numConsonants < 2) || (numConsonants > StimulusHistory.MAX_STIMULUS + 1)) {
+            throw new IllegalArgumentException("stimulus counts must be in [2, " + (StimulusHistory.MAX_STIMULUS + 1) + "]");
+        }
+        this.mBlockSize = config.getBlockSize();
+        this.mAudioOnlyTargets = config.getAudioTargets() - config.getBothTargets();
+        this.mVisualOnlyTargets = config.getVisualTargets() - config.getBothTargets();
+        this.mBothTargets = config.getBothTargets();
+        this.mNumSquares = numSquares;
+        this.mNumConsonants = numConsonants;
+        this.mAvoidLures = avoidLures;
+        this.mIdentity = identify(new int[] {VERSION, mBlockSize, mAudioOnlyTargets, mVisualOnlyTargets,
+                                             mBothTargets, numSquares, numConsonants, avoidLures ? 1 : 0});
+    }
+
+    /**
+     * @return A hash of everything that decides which block a seed gives:
+     * VERSION and the constructor's parameters.
+     */
+    public long getIdentity() {
+        return mIdentity;
+    }
+
+    private static long identify(int[] parameters) {
+        long hash = 0;
+        for (int parameter : parameters) {
+            hash = SplitMix64.mix(hash + SplitMix64.GOLDEN_GAMMA + parameter);
+        }
+        return hash;
+    }
+
+    /**
+     * @return Trials in a block played at nInterval.
+     */
+    public int getBlockLength(int nInterval) {
+        return mBlockSize + nInterval;
+    }
+
+    /**
+     * Generate a block.
+     * @param rng Used only by this call for its duration.
+     * @param nInterval N to generate the block for.
+     * @param history Cleared, then filled with exactly getBlockLength(nInterval) trials.
+     */
+    public void generate(RandomSource rng, int nInterval, StimulusHistory history) {
+        final int length = getBlockLength(nInterval);
+        history.ensureCapacity(length);
+        history.clear();
+
+        // the first N entries will be completely random, since there can be
+        // no repetitions.
+        int[] visuals = new int[Math.max(nInterval, mBlockSize)];
+        int[] audios = new int[visuals.length];
+        rng.fillInts(visuals, 0, nInterval, mNumSquares);
+        rng.fillInts(audios, 0, nInterval, mNumConsonants);
+        for (int trial = 0; trial < nInterval; trial++) {
+            history.add(visuals[trial], audios[trial]);
+        }
+
+        byte[] slots = layOutSlots();
+        for (int i = slots.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            byte swap = slots[i];
+            slots[i] = slots[j];
+            slots[j] = swap;
+        }
+
+        if (!mAvoidLures) {
+            // every non-target is a draw from one fewer values, skipping
+            // the one N back, so the draws can all be made up front in bulk.
+            rng.fillInts(visuals, 0, slots.length, mNumSquares - 1);
+            rng.fillInts(audios, 0, slots.length, mNumConsonants - 1);
+            for (int i = 0; i < slots.length; i++) {
+                int trial = nInterval + i;
+                int previous_visual = history.getVisual(trial - nInterval);
+                int previous_audio = history.getAudio(trial - nInterval);
+                int visual = ((slots[i] & Guess.VISUAL) != 0) ? previous_visual : skip(visuals[i], previous_visual);
+                int audio = ((slots[i] & Guess.AUDIO) != 0) ? previous_audio : skip(audios[i], previous_audio);
+                history.add(visual, audio);
+            }
+            return;
+        }
+
+        int[] excluded = new int[3];
+        for (int i = 0; i < slots.length; i++) {
+            int trial = nInterval + i;
+            int visual;
+            int audio;
+            if ((slots[i] & Guess.VISUAL) != 0) {
+                visual = history.getVisual(trial - nInterval);
+            } else {
+                int count = 0;
+                for (int lag = nInterval - 1; lag <= nInterval + 1; lag++) {
+                    if ((lag >= 1) && (lag <= trial)) {
+                        excluded[count++] = history.getVisual(trial - lag);
+                    }
+                }
+                visual = nextIntExcept(rng, mNumSquares, excluded, count);
+            }
+            if ((slots[i] & Guess.AUDIO) != 0) {
+                audio = history.getAudio(trial - nInterval);
+            } else {
+                int count = 0;
+                for (int lag = nInterval - 1; lag <= nInterval + 1; lag++) {
+                    if ((lag >= 1) && (lag <= trial)) {
+                        excluded[count++] = history.getAudio(trial - lag);
+                    }
+                }
+                audio = nextIntExcept(rng, mNumConsonants, excluded, count);
+            }
+            history.add(visual, audio);
+        }
+    } // public void generate(RandomSource rng, int nInterval, StimulusHistory history)
+
+    /**
+     * @return blockSize slot types, in unshuffled order.
+     */
+    private byte[] layOutSlots() {
+        byte[] slots = new byte[mBlockSize];
+        int i = 0;
+        for (int k = 0; k < mAudioOnlyTargets; k++) {
+            slots[i++] = AUDIO_TARGET;
+        }
+        for (int k = 0; k < mVisualOnlyTargets; k++) {
+            slots[i++] = VISUAL_TARGET;
+        }
+        for (int k = 0; k < mBothTargets; k++) {
+            slots[i++] = BOTH_TARGETS;
+        }
+        while (i < slots.length) {
+            slots[i++] = NON_TARGET;
+        }
+        return slots;
+    }
+
+    /**
+     * @return Whether any scored trial of a block is a lure: a repeat of the
+     * stimulus N-1 or N+1 trials back in a modality where it does not repeat
+     * the stimulus N trials back.
+     */
+    public static boolean hasLures(StimulusHistory history, int nInterval) {
+        for (int trial = nInterval; trial < history.size(); trial++) {
+            int target = history.getMatches(trial, nInterval);
+            for (int lag = nInterval - 1; lag <= nInterval + 1; lag += 2) {
+                if ((lag < 1) || (lag > trial)) {
+                    continue;
+                }
+                int lure = history.getMatches(trial, lag) & ~target;
+                if (lure != Guess.NONE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A uniformly random value in [0, limit) other than the first
+     * count values of excluded, which may repeat.  Sorts those in place.
+     * A single distinct value is left to RandomSource.nextIntExcept().
+     */
+    private static int nextIntExcept(RandomSource rng, int limit, int[] excluded, int count) {
+        // insertion sort, dropping duplicates.
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            int value = excluded[i];
+            int j = distinct;
+            while ((j > 0) && (excluded[j - 1] > value)) {
+                j--;
+            }
+            if ((j > 0) && (excluded[j - 1] == value)) {
+                continue;
+            }
+            System.arraycopy(excluded, j, excluded, j + 1, distinct - j);
+            excluded[j] = value;
+            distinct++;
+        }
+        if (distinct == 1) {
+            return rng.nextIntExcept(limit, excluded[0]);
+        }
+        int result = rng.nextInt(limit - distinct);
+        for (int i = 0; i < distinct; i++) {
+            if (result >= excluded[i]) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return draw, a uniformly random value in [0, limit - 1), mapped to
+     * one in [0, limit) other than excluded.
+     */
+    private static int skip(int draw, int excluded) {
+        return (draw >= excluded) ? draw + 1 : draw;
+    }
+
+}
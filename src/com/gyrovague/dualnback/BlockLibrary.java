@@ -0,0 +1,153 @@
+/**
+ * Pre-generated, pre-validated blocks, packed into one asset.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import android.content.Context;
+
+/**
+ * Read side of the block library written by
+ * tools/.../BlockLibraryBuilder at build time: for each N, a pool of
+ * blocks that have exact target counts and no lures.  The whole library is
+ * mapped once; a block is picked in O(1) from its block seed, so days stay
+ * reproducible from a DayPlan for a given library.  The layout is
+ * BlockLibraryFormat's.
+ *
+ * Reads are absolute, so it is safe to use from several threads.
+ *
+ * @author asimihsan
+ *
+ */
+public final class BlockLibrary {
+    static final String ASSET_NAME = "blocks.lib";
+    private static final int HEADER_SIZE = BlockLibraryFormat.HEADER_SIZE;
+    private static final int ENTRY_SIZE = BlockLibraryFormat.ENTRY_SIZE;
+
+    private static BlockLibrary sInstance;
+
+    private final ByteBuffer mLibrary;
+    private final int mBlockSize;
+    private final int mAudioTargets;
+    private final int mVisualTargets;
+    private final int mBothTargets;
+    private final int mNumSquares;
+    private final int mNumConsonants;
+
+    /**
+     * Index of each N's entry, or -1.  Indexed by N.
+     */
+    private final int[] mEntryForN;
+
+    /**
+     * Identity of the contents, for DayPlan: capacity in the top 32 bits,
+     * CRC-32 in the bottom.
+     */
+    private final long mIdentity;
+
+    private BlockLibrary(ByteBuffer library) throws IOException {
+        mLibrary = library;
+        if ((library.getInt(0) != BlockLibraryFormat.MAGIC) || (library.getInt(4) != BlockLibraryFormat.VERSION)) {
+            throw new IOException("Not a version " + BlockLibraryFormat.VERSION + " block library");
+        }
+        mBlockSize = library.getInt(8);
+        mAudioTargets = library.getInt(12);
+        mVisualTargets = library.getInt(16);
+        mBothTargets = library.getInt(20);
+        mNumSquares = library.getInt(24);
+        mNumConsonants = library.getInt(28);
+        int count = library.getInt(32);
+
+        int max_n = 0;
+        for (int i = 0; i < count; i++) {
+            max_n = Math.max(max_n, library.getInt(HEADER_SIZE + i * ENTRY_SIZE));
+        }
+        mEntryForN = new int[max_n + 1];
+        Arrays.fill(mEntryForN, -1);
+        for (int i = 0; i < count; i++) {
+            mEntryForN[library.getInt(HEADER_SIZE + i * ENTRY_SIZE)] = i;
+        }
+        mIdentity = identify(library);
+    }
+
+    private static long identify(ByteBuffer library) {
+        ByteBuffer contents = library.duplicate();
+        contents.clear();
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        while (contents.hasRemaining()) {
+            int length = Math.min(chunk.length, contents.remaining());
+            contents.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (((long) library.capacity()) << 32) | crc.getValue();
+    }
+
+    /**
+     * A library already in memory, e.g. one built by a test.  Reads are
+     * absolute, so the buffer's position and limit don't matter.
+     * @param library Big-endian, in BlockLibraryFormat's layout.
+     * @throws IOException if it is not a library of BlockLibraryFormat.VERSION.
+     */
+    public static BlockLibrary wrap(ByteBuffer library) throws IOException {
+        return new BlockLibrary(library);
+    }
+
+    /**
+     * The process-wide library, mapped on first use.
+     */
+    static synchronized BlockLibrary get(Context context) throws IOException {
+        if (sInstance == null) {
+            sInstance = new BlockLibrary(MappedAsset.map(context, ASSET_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return Whether the library has blocks for this N that were built for
+     * this configuration and these stimulus counts.
+     */
+    public boolean covers(GameConfig config, int numSquares, int numConsonants, int nInterval) {
+        return (config.getBlockSize() == mBlockSize) &&
+               (config.getAudioTargets() == mAudioTargets) &&
+               (config.getVisualTargets() == mVisualTargets) &&
+               (config.getBothTargets() == mBothTargets) &&
+               (numSquares == mNumSquares) && (numConsonants == mNumConsonants) &&
+               (nInterval >= 0) && (nInterval < mEntryForN.length) && (mEntryForN[nInterval] >= 0);
+    }
+
+    /**
+     * Copy the block that blockSeed picks for this N into history.  Only
+     * valid if covers() is true for N.
+     */
+    public void fill(int nInterval, long blockSeed, StimulusHistory history) {
+        int entry = HEADER_SIZE + mEntryForN[nInterval] * ENTRY_SIZE;
+        int blocks = mLibrary.getInt(entry + 4);
+        int stride = mLibrary.getInt(entry + 8);
+        int offset = mLibrary.getInt(entry + 12);
+
+        // top 32 bits of the seed scaled to [0, blocks).
+        int index = (int) (((blockSeed >>> 32) * blocks) >>> 32);
+        BlockLibraryFormat.unpack(mLibrary, offset + index * stride, mBlockSize + nInterval, history);
+    } // public void fill(int nInterval, long blockSeed, StimulusHistory history)
+
+    /**
+     * @return Identity of the contents: libraries with the same identity
+     * give the same block for a seed and N.
+     */
+    public long getIdentity() {
+        return mIdentity;
+    }
+
+    /**
+     * @return Size of the whole library in bytes.
+     */
+    int getMappedBytes() {
+        return mLibrary.capacity();
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * On-disk layout of the block library.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The one definition of the block library layout, shared by the build-time
+ * tools/.../BlockLibraryBuilder that writes it and BlockLibrary that reads
+ * it.  Uses nothing from android, so it runs on the build machine too.
+ *
+ * Layout, header fields big-endian:
+ *
+ *   int magic 'DNBL', int version, int block size, int audio targets,
+ *   int visual targets, int both targets, int squares, int consonants,
+ *   int count, count * (int N, int blocks, int stride, int offset), then
+ *   the pools.
+ *
+ * Each block takes stride bytes.  Trial t is (visual << 3) | audio in bits
+ * [6t, 6t + 6), least significant bit first.
+ *
+ * @author asimihsan
+ *
+ */
+public final class BlockLibraryFormat {
+    public static final int MAGIC = 0x444e424c;    // "DNBL"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 9 * 4;
+    public static final int ENTRY_SIZE = 4 * 4;
+    public static final int BITS_PER_TRIAL = 6;
+    private static final int STIMULUS_MASK = (1 << BITS_PER_TRIAL) - 1;
+
+    private BlockLibraryFormat() {
+    }
+
+    /**
+     * @return Bytes one block of length trials takes.
+     */
+    public static int getStride(int length) {
+        return (length * BITS_PER_TRIAL + 7) / 8;
+    }
+
+    /**
+     * Pack a block into getStride(history.size()) bytes of out from offset,
+     * which must be zero.
+     */
+    public static void pack(StimulusHistory history, byte[] out, int offset) {
+        for (int trial = 0; trial < history.size(); trial++) {
+            int value = (history.getVisual(trial) << 3) | history.getAudio(trial);
+            int bit = trial * BITS_PER_TRIAL;
+            int word = value << (bit & 7);
+            out[offset + (bit >>> 3)] |= (byte) word;
+            if ((word >>> 8) != 0) {
+                out[offset + (bit >>> 3) + 1] |= (byte) (word >>> 8);
+            }
+        }
+    }
+
+    /**
+     * Replace history with the length trials packed at base.  Reads are
+     * absolute, so library's position doesn't matter.
+     */
+    static void unpack(ByteBuffer library, int base, int length, StimulusHistory history) {
+        history.ensureCapacity(length);
+        history.clear();
+        for (int trial = 0; trial < length; trial++) {
+            int bit = trial * BITS_PER_TRIAL;
+            int position = base + (bit >>> 3);
+            int word = library.get(position) & 0xFF;
+            if ((bit & 7) > 8 - BITS_PER_TRIAL) {
+                word |= (library.get(position + 1) & 0xFF) << 8;
+            }
+            int value = (word >>> (bit & 7)) & STIMULUS_MASK;
+            history.add(value >>> 3, value & StimulusHistory.MAX_STIMULUS);
+        }
+    } // static void unpack(ByteBuffer library, int base, int length, StimulusHistory history)
+
+    /**
+     * @return Whether a block may go in the library: the full length for N,
+     * exactly config's target counts, and no lures.
+     */
+    public static boolean isValid(GameConfig config, StimulusHistory history, int nInterval) {
+        if (history.size() != config.getBlockSize() + nInterval) {
+            return false;
+        }
+        int visual = 0;
+        int audio = 0;
+        int both = 0;
+        for (int trial = nInterval; trial < history.size(); trial++) {
+            int matches = history.getMatches(trial, nInterval);
+            if ((matches & Guess.VISUAL) != 0) {
+                visual++;
+            }
+            if ((matches & Guess.AUDIO) != 0) {
+                audio++;
+            }
+            if (matches == Guess.BOTH) {
+                both++;
+            }
+        }
+        return (visual == config.getVisualTargets()) && (audio == config.getAudioTargets()) &&
+               (both == config.getBothTargets()) && !BlockGenerator.hasLures(history, nInterval);
+    }
+
+    /**
+     * Write a whole library.
+     * @param nIntervals N of each pool.
+     * @param pools Packed blocks for nIntervals[i], each getStride(block size + N) bytes.
+     */
+    public static void write(DataOutputStream out, GameConfig config, int numSquares, int numConsonants,
+                             int[] nIntervals, byte[][] pools) throws IOException {
+        int count = nIntervals.length;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(config.getBlockSize());
+        out.writeInt(config.getAudioTargets());
+        out.writeInt(config.getVisualTargets());
+        out.writeInt(config.getBothTargets());
+        out.writeInt(numSquares);
+        out.writeInt(numConsonants);
+        out.writeInt(count);
+        int offset = HEADER_SIZE + count * ENTRY_SIZE;
+        for (int i = 0; i < count; i++) {
+            int stride = getStride(config.getBlockSize() + nIntervals[i]);
+            if ((pools[i].length == 0) || (pools[i].length % stride != 0)) {
+                throw new IllegalArgumentException("pool for N = " + nIntervals[i] + " is not whole blocks");
+            }
+            out.writeInt(nIntervals[i]);
+            out.writeInt(pools[i].length / stride);
+            out.writeInt(stride);
+            out.writeInt(offset);
+            offset += pools[i].length;
+        }
+        for (int i = 0; i < count; i++) {
+            out.write(pools[i]);
+        }
+    } // public static void write(DataOutputStream out, GameConfig config, int numSquares, int numConsonants, int[] nIntervals, byte[][] pools)
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Everything needed to reproduce a day's blocks.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import ec.util.SplitMix64;
+
+/**
+ * A day is reproducible from one 64-bit seed plus, for each block, the N
+ * it was played at and where it came from.  Block b's seed is the day seed
+ * mixed with b by the SplitMix64 finalizer.  The block at N is either
+ * generated from an RNG seeded with the block seed and N (see
+ * GameManager.newBlockRNG()) or picked by the block seed from the block
+ * library, so any block can be regenerated without replaying the ones
+ * before it.  The same seed and N give different blocks from different
+ * sources, so each block also records its source and that source's
+ * identity: BlockGenerator.getIdentity() or BlockLibrary.getIdentity().
+ *
+ * Serialized form: version byte, day seed, a byte count of distinct
+ * sources then each as a source byte and identity long, block count short,
+ * then per block a byte of N and a byte indexing the sources.  A day
+ * usually has one or two sources, so a 20-block day is 61 bytes.
+ *
+ * Not thread-safe; owned by GameManager.
+ *
+ * @author asimihsan
+ *
+ */
+public final class DayPlan {
+    private static final int VERSION = 2;
+    public static final int MAX_BLOCKS = 0xFFFF;
+    public static final int MAX_NINTERVAL = 0xFF;
+    private static final int INITIAL_BLOCKS = 32;
+    private static final int MAX_SOURCES = 0xFF;
+
+    /**
+     * Where a block's stimuli came from.
+     */
+    public static final int SOURCE_GENERATOR    = 1;
+    public static final int SOURCE_LIBRARY      = 2;
+
+    private final long mDaySeed;
+    private byte[] mNIntervals = new byte[INITIAL_BLOCKS];
+    private byte[] mSources = new byte[INITIAL_BLOCKS];
+    private long[] mSourceIds = new long[INITIAL_BLOCKS];
+    private int mBlockCount;
+
+    public DayPlan(long daySeed) {
+        this.mDaySeed = daySeed;
+    }
+
+    public long getDaySeed() {
+        return mDaySeed;
+    }
+
+    /**
+     * @return Seed of a block, independent of the N it is played at.
+     */
+    public long getBlockSeed(int block) {
+        // output block + 1 of a SplitMix64 seeded with the day seed.
+        return SplitMix64.mix(mDaySeed + (block + 1) * SplitMix64.GOLDEN_GAMMA);
+    }
+
+    /**
+     * Record the N a block is played at and where it came from.  Recording
+     * a block again replaces it and forgets every later block.
+     * @param block At most getBlockCount(): a block already recorded, or the next one.
+     * @param source SOURCE_GENERATOR or SOURCE_LIBRARY.
+     * @param sourceId Identity of the generator or library.
+     */
+    public void recordBlock(int block, int nInterval, int source, long sourceId) {
+        if ((block < 0) || (block > mBlockCount) || (block >= MAX_BLOCKS)) {
+            throw new IllegalArgumentException("block " + block + " out of range; " + mBlockCount + " recorded");
+        }
+        if ((nInterval < 1) || (nInterval > MAX_NINTERVAL)) {
+            throw new IllegalArgumentException("nInterval out of range: " + nInterval);
+        }
+        if ((source != SOURCE_GENERATOR) && (source != SOURCE_LIBRARY)) {
+            throw new IllegalArgumentException("unknown block source: " + source);
+        }
+        if (block == mNIntervals.length) {
+            int capacity = Math.min(2 * mNIntervals.length, MAX_BLOCKS);
+            byte[] grown = new byte[capacity];
+            System.arraycopy(mNIntervals, 0, grown, 0, mBlockCount);
+            mNIntervals = grown;
+            grown = new byte[capacity];
+            System.arraycopy(mSources, 0, grown, 0, mBlockCount);
+            mSources = grown;
+            long[] grown_ids = new long[capacity];
+            System.arraycopy(mSourceIds, 0, grown_ids, 0, mBlockCount);
+            mSourceIds = grown_ids;
+        }
+        mNIntervals[block] = (byte) nInterval;
+        mSources[block] = (byte) source;
+        mSourceIds[block] = sourceId;
+        mBlockCount = block + 1;
+    }
+
+    public int getBlockCount() {
+        return mBlockCount;
+    }
+
+    /**
+     * @return N that a recorded block was played at.
+     */
+    public int getNInterval(int block) {
+        checkRecorded(block);
+        return mNIntervals[block] & 0xFF;
+    }
+
+    /**
+     * @return SOURCE_GENERATOR or SOURCE_LIBRARY, for a recorded block.
+     */
+    public int getSource(int block) {
+        checkRecorded(block);
+        return mSources[block];
+    }
+
+    /**
+     * @return Identity of the generator or library a recorded block came from.
+     */
+    public long getSourceId(int block) {
+        checkRecorded(block);
+        return mSourceIds[block];
+    }
+
+    private void checkRecorded(int block) {
+        if ((block < 0) || (block >= mBlockCount)) {
+            throw new IndexOutOfBoundsException("block " + block + " not recorded; " + mBlockCount + " recorded");
+        }
+    }
+
+    /**
+     * @throws IOException if writing fails, or the blocks came from more
+     * than MAX_SOURCES distinct sources.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        byte[] table_sources = new byte[MAX_SOURCES];
+        long[] table_ids = new long[MAX_SOURCES];
+        byte[] indexes = new byte[mBlockCount];
+        int table_size = 0;
+        for (int block = 0; block < mBlockCount; block++) {
+            int index = 0;
+            while ((index < table_size) &&
+                    ((table_sources[index] != mSources[block]) || (table_ids[index] != mSourceIds[block]))) {
+                index++;
+            }
+            if (index == table_size) {
+                if (table_size == MAX_SOURCES) {
+                    throw new IOException("more than " + MAX_SOURCES + " block sources");
+                }
+                table_sources[index] = mSources[block];
+                table_ids[index] = mSourceIds[block];
+                table_size++;
+            }
+            indexes[block] = (byte) index;
+        }
+
+        out.writeByte(VERSION);
+        out.writeLong(mDaySeed);
+        out.writeByte(table_size);
+        for (int index = 0; index < table_size; index++) {
+            out.writeByte(table_sources[index]);
+            out.writeLong(table_ids[index]);
+        }
+        out.writeShort(mBlockCount);
+        for (int block = 0; block < mBlockCount; block++) {
+            out.writeByte(mNIntervals[block]);
+            out.writeByte(indexes[block]);
+        }
+    } // public void writeTo(DataOutputStream out)
+
+    /**
+     * @throws IOException if the stream is truncated or not a day plan this
+     * version can read.  Plans from before blocks recorded their source
+     * can't be regenerated faithfully, so they are refused.
+     */
+    public static DayPlan readFrom(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported day plan version: " + version);
+        }
+        DayPlan plan = new DayPlan(in.readLong());
+        int table_size = in.readUnsignedByte();
+        int[] table_sources = new int[table_size];
+        long[] table_ids = new long[table_size];
+        for (int index = 0; index < table_size; index++) {
+            table_sources[index] = in.readUnsignedByte();
+            table_ids[index] = in.readLong();
+            if ((table_sources[index] != SOURCE_GENERATOR) && (table_sources[index] != SOURCE_LIBRARY)) {
+                throw new IOException("invalid block source " + index + ": " + table_sources[index]);
+            }
+        }
+        int block_count = in.readUnsignedShort();
+        for (int block = 0; block < block_count; block++) {
+            int nInterval = in.readUnsignedByte();
+            int index = in.readUnsignedByte();
+            if (nInterval < 1) {
+                throw new IOException("invalid N for block " + block);
+            }
+            if (index >= table_size) {
+                throw new IOException("invalid source for block " + block + ": " + index);
+            }
+            plan.recordBlock(block, nInterval, table_sources[index], table_ids[index]);
+        }
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("DayPlan[seed=").append(Long.toHexString(mDaySeed)).append(", N=");
+        for (int block = 0; block < mBlockCount; block++) {
+            result.append((block == 0) ? "" : ",").append(mNIntervals[block] & 0xFF);
+        }
+        return result.append(']').toString();
+    }
+
+}
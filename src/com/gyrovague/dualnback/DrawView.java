@@ -1,24 +1,17 @@
 package com.gyrovague.dualnback;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import android.content.Context;
-import android.content.res.Resources;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.RectF;
 import android.os.Handler;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 
 /**
  * @author asimihsan
  *
  */
-public class DrawView extends View {
+public class DrawView extends View implements StimulusView {
     private String TAG = "DrawView";
     /**
      *  Public bit field flags for determining which square in the grid
@@ -34,26 +27,16 @@ public class DrawView extends View {
     public static final int BOTTOM_RIGHT    = 1 << 7;
     public static final int[] mPossibleSquares = {TOP_LEFT, TOP_MIDDLE, TOP_RIGHT, MIDDLE_LEFT, MIDDLE_RIGHT, BOTTOM_LEFT, BOTTOM_MIDDLE, BOTTOM_RIGHT};
 
-    /**
-     * Hash map to store drawing rectangles for each square location.
-     */
-    private HashMap<Integer, Rect> mSquareToRect = new HashMap<Integer, Rect>();
-    private int mSquareSize;
-
-    /**
-     * Handle the perpetual white cross.
-     */
-    private Rect mRectCross;
-    private Paint mPaintWhiteCross = new Paint();
+    private static final int NUM_SQUARES = mPossibleSquares.length;
 
     /**
      * Track the current drawing state in a bit-field.
      */
     private int mSquaresDrawn = 0;
 
-    private Paint   mPaint = new Paint();
+    private GridPainter mPainter;
+    private final Rect mDirtyRect = new Rect();
     private String    mTag;
-    private Resources mResources;
     private Handler mHandlerUI;
 
     public DrawView(Context context) {
@@ -69,8 +52,7 @@ public class DrawView extends View {
     private void commonConstructor(Context context) {
         setFocusable(true);
         mTag = context.getString(R.string.app_name);
-        mResources = context.getResources();
-        mPaintWhiteCross.setColor(mResources.getColor(R.color.solid_white));
+        mPainter = new GridPainter(context.getResources());
 
         // force a re-draw of the display.  eventually triggers onDraw().
         invalidate();
@@ -80,108 +62,83 @@ public class DrawView extends View {
         this.mHandlerUI = mHandlerUI;
     }
 
+    /**
+     * Show one square, and invalidate just the squares that changed.  The
+     * new square is always invalidated so that a redraw, and so
+     * MSG_TYPE_DRAWING_DONE, always follows.
+     */
     public void setmSquaresDrawnFromIndex(int index) {
+        int previous = mSquaresDrawn;
         this.mSquaresDrawn = 1 << index;
+        invalidateSquares((previous ^ mSquaresDrawn) | mSquaresDrawn);
     }
 
+    /**
+     * Hide every square, invalidating only those that were showing.
+     */
     public void disableAllSquares() {
+        int previous = mSquaresDrawn;
         mSquaresDrawn = 0;
+        invalidateSquares(previous);
+    }
+
+    /**
+     * Squares are hidden by GameActivity's MSG_TYPE_HALT_VISUAL.
+     */
+    public boolean isStimulusSelfTimed() {
+        return false;
+    }
+
+    /**
+     * Invalidate the bounding rectangle of each square in a bit field,
+     * rather than the whole view with its static white cross.  Must be
+     * called on the UI thread.
+     */
+    private void invalidateSquares(int squares) {
+        for (int i = 0; (i < NUM_SQUARES) && (squares != 0); i++) {
+            if ((squares & mPossibleSquares[i]) != 0) {
+                mPainter.getSquareBounds(i, mDirtyRect);
+                invalidate(mDirtyRect);
+                squares &= ~mPossibleSquares[i];
+            }
+        }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
-        final String FTAG = TAG + "::onDraw()";
-        Log.d(FTAG, "entry");
         draw(canvas);
     }
 
+    /**
+     * Runs every frame, so must not allocate or log.
+     */
     public void draw(Canvas canvas) {
-        final String FTAG = TAG + "::draw()";
-        Log.d(FTAG, "entry");
-        drawWhiteCross(canvas);
-
-        // for each possible square, clear those not enabled and draw those enabled.
-        for (Map.Entry<Integer, Rect> entry : mSquareToRect.entrySet()) {
-            int square = entry.getKey();
-            Rect rect = entry.getValue();
-            if ((mSquaresDrawn & square) != 0) {
-                // visible.
-                mPaint.setColor(mResources.getColor(R.color.solid_blue));
-            } else {
-                // invisible
-                mPaint.setColor(mResources.getColor(R.drawable.transparent_background));
-            }
-            RectF rectf = new RectF();
-            rectf.set(rect);
-            canvas.drawRoundRect(rectf, 5.0f, 5.0f, mPaint);
-        }
+        mPainter.draw(canvas, mSquaresDrawn);
 
         if (mHandlerUI != null) {
-            mHandlerUI.sendEmptyMessage(GameActivity.MSG_TYPE_DRAWING_DONE);
+            // carry the draw time in the two int arguments, for latency measurement.
+            long now = System.nanoTime();
+            mHandlerUI.sendMessage(mHandlerUI.obtainMessage(GameActivity.MSG_TYPE_DRAWING_DONE,
+                                                            (int) (now >>> 32), (int) now));
         }
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        setupDrawingCoordinates();
-        mPaintWhiteCross.setStrokeWidth(mSquareSize / 32);
+        mPainter.setSize(getLeft(), getTop(), getWidth(), getHeight());
     }
 
-    /**
-     * Draw the perpetual white cross.
-     */
-    private void drawWhiteCross(Canvas canvas) {
-        canvas.drawLine(mRectCross.left + mRectCross.width() / 2,
-                        mRectCross.top + mRectCross.height() / 5,
-                        mRectCross.left + mRectCross.width() / 2,
-                        mRectCross.bottom - mRectCross.height() / 5,
-                        mPaintWhiteCross);
-        canvas.drawLine(mRectCross.left + mRectCross.width() / 5,
-                        mRectCross.top + mRectCross.height() / 2,
-                        mRectCross.right - mRectCross.width() / 5,
-                        mRectCross.top + mRectCross.height() / 2,
-                        mPaintWhiteCross);
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // after a detach at the same size there is no onSizeChanged().
+        mPainter.restore();
     }
 
-    /**
-     * Set up internal tracking of where the squares in the grid, for later
-     * painting.
-     */
-    private void setupDrawingCoordinates() {
-        /**
-         * Measurements.
-         */
-        int width = getWidth();
-        int height = getHeight();
-        int top = getTop();
-        int left = getLeft();
-
-        /**
-         * Calculations.
-         */
-        int canvas = Math.min(width, height);
-        int square = canvas / 4;
-        mSquareSize = square;
-        int gap = square / 4;
-
-        /**
-         * Set up all of the squares' locations.
-         * Rect(int left, int top, int right, int bottom)
-         */
-        mSquareToRect.clear();
-        mSquareToRect.put(TOP_LEFT,            new Rect(left+1*gap+0*square, top+1*gap+0*square, left+1*gap+1*square, top+1*gap+1*square));
-        mSquareToRect.put(TOP_MIDDLE,        new Rect(left+2*gap+1*square, top+1*gap+0*square, left+2*gap+2*square, top+1*gap+1*square));
-        mSquareToRect.put(TOP_RIGHT,        new Rect(left+3*gap+2*square, top+1*gap+0*square, left+3*gap+3*square, top+1*gap+1*square));
-        mSquareToRect.put(MIDDLE_LEFT,        new Rect(left+1*gap+0*square, top+2*gap+1*square, left+1*gap+1*square, top+2*gap+2*square));
-        mSquareToRect.put(MIDDLE_RIGHT,     new Rect(left+3*gap+2*square, top+2*gap+1*square, left+3*gap+3*square, top+2*gap+2*square));
-        mSquareToRect.put(BOTTOM_LEFT,         new Rect(left+1*gap+0*square, top+3*gap+2*square, left+1*gap+1*square, top+3*gap+3*square));
-        mSquareToRect.put(BOTTOM_MIDDLE,     new Rect(left+2*gap+1*square, top+3*gap+2*square, left+2*gap+2*square, top+3*gap+3*square));
-        mSquareToRect.put(BOTTOM_RIGHT,     new Rect(left+3*gap+2*square, top+3*gap+2*square, left+3*gap+3*square, top+3*gap+3*square));
-
-        /**
-         * Set the middle-middle square for the perpetual white cross.
-         */
-        mRectCross = new Rect(left+2*gap+1*square, top+2*gap+1*square, left+2*gap+2*square, top+2*gap+2*square);
-    } // private void setupDrawingCoordinates()
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mPainter.recycle();
+    }
 
 }
@@ -1,30 +1,41 @@
 package com.gyrovague.dualnback;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Message;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.text.format.Time;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
-import ec.util.MersenneTwister;
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+import com.gyrovague.dualnback.random.RandomSource;
 import android.graphics.Color;
 
 public class GameActivity extends Activity {
     private static String TAG = "GameActivity";
     private SoundManager mSoundManager;
-    private DrawView mDrawView;
+    private StimulusView mDrawView;
     private Button mButtonAudio;
     private Button mButtonVisual;
     private Button[] mAllButtons;
@@ -32,9 +43,26 @@ public class GameActivity extends Activity {
     private Activity me = this;
     private Context mContext = this;
     private GameManager mGameManager;
-    private MersenneTwister mRNG;
-    boolean mIsSoundManagerInitialized;
-    boolean mIsGameManagerInitialized;
+    private TrialScheduler mTrialScheduler;
+    private volatile boolean mStimulusSelfTimed;
+    private RandomSource mRNG;
+
+    /**
+     * Runs the SoundManager and GameManager halves of session startup
+     * concurrently, the engine thread joining on both, and then
+     * GameManager's speculative generation of the next block.
+     */
+    private final ExecutorService mWorkerExecutor = Executors.newFixedThreadPool(2);
+
+    /**
+     * Time to first trial, excluding the alert: from CREATE (or the end of
+     * the previous block) until the block is ready, plus from the alert's
+     * dismissal until the first stimulus is drawn.  mStartupMillis is the
+     * first part, or -1 once logged.  Engine thread only.
+     */
+    private long mInitializeStartMillis;
+    private long mStartupMillis = -1;
+    private long mBlockStartMillis;
     ProgressDialog mDialog;
     private Trial mCurrentTrial;
     private Vibrator mVibrator;
@@ -44,7 +72,29 @@ public class GameActivity extends Activity {
     public static final String PREFS_NAME = "prefs";
 
     /**
-     * Message types handled by and sent to the main UI thread.
+     * Private file holding the last day's DayPlan, from which every block
+     * of that day can be regenerated.
+     */
+    public static final String DAY_PLAN_FILE = "dayplan";
+
+    /**
+     * How long each visual stimulus stays on screen.
+     */
+    public static final int STIMULUS_DURATION_MS = 500;
+
+    /**
+     * Render the grid with SurfaceDrawView, which times the stimulus in whole
+     * frames on its own thread, instead of DrawView.
+     */
+    private static final boolean USE_SURFACE_RENDERER = false;
+
+    /**
+     * Achieved stimulus durations, as reported by a self-timed StimulusView.
+     */
+    private final LatencyHistogram mStimulusDurations = new LatencyHistogram("stimulus");
+
+    /**
+     * Message types handled by and sent to the game engine thread.
      */
     public static final int MSG_TYPE_NEW_TRIAL         = 1;
     public static final int MSG_TYPE_GUESS_AUDIO       = 2;
@@ -54,15 +104,30 @@ public class GameActivity extends Activity {
     public static final int MSG_TYPE_HALT_AUDIO        = 6;
     public static final int MSG_TYPE_DRAWING_DONE      = 7;
     public static final int MSG_TYPE_CREATE            = 8;
-    public static final int MSG_TYPE_INITIALIZE        = 9;
     public static final int MSG_TYPE_INITIALIZE_DONE   = 10;
     public static final int MSG_TYPE_NEW_BLOCK         = 11;
     public static final int MSG_TYPE_END_OF_DAY        = 12;
+    public static final int MSG_TYPE_STIMULUS_REPORT   = 13;
+    public static final int MSG_TYPE_START_BLOCK       = 14;
     public static final int[] ALL_MESSAGE_TYPES = new int[] {MSG_TYPE_NEW_TRIAL, MSG_TYPE_GUESS_AUDIO, MSG_TYPE_GUESS_VISUAL, MSG_TYPE_GUESS_VALIDATE,
             MSG_TYPE_HALT_VISUAL, MSG_TYPE_HALT_AUDIO, MSG_TYPE_DRAWING_DONE, MSG_TYPE_CREATE,
-            MSG_TYPE_INITIALIZE, MSG_TYPE_INITIALIZE_DONE, MSG_TYPE_NEW_BLOCK, MSG_TYPE_END_OF_DAY
+            MSG_TYPE_INITIALIZE_DONE, MSG_TYPE_NEW_BLOCK, MSG_TYPE_END_OF_DAY,
+            MSG_TYPE_STIMULUS_REPORT, MSG_TYPE_START_BLOCK
                                                             };
 
+    /**
+     * Render commands handled by the main UI thread.  The engine thread
+     * never touches views itself.
+     */
+    public static final int MSG_TYPE_SHOW_SQUARE       = 15;
+    public static final int MSG_TYPE_HIDE_SQUARES      = 16;
+    public static final int MSG_TYPE_BUTTON_FEEDBACK   = 17;
+    public static final int MSG_TYPE_RESET_FEEDBACK    = 18;
+    public static final int MSG_TYPE_SHOW_ALERT        = 19;
+    public static final int[] ALL_RENDER_MESSAGE_TYPES = new int[] {MSG_TYPE_SHOW_SQUARE, MSG_TYPE_HIDE_SQUARES,
+            MSG_TYPE_BUTTON_FEEDBACK, MSG_TYPE_RESET_FEEDBACK, MSG_TYPE_SHOW_ALERT
+                                                                   };
+
     /**
      * States that the activity can be in.
      */
@@ -83,100 +148,143 @@ public class GameActivity extends Activity {
     private static final int DIALOG_ALERT_INTERVAL          = 1;
     private AlertDialog mAlertDialog;
 
+    /**
+     * Runs the game: owns GameManager, SoundManager, the trial scheduler and
+     * mActivityState.  Touch input and drawing on the UI thread never wait
+     * on it.
+     */
+    private final HandlerThread mEngineThread = startEngineThread();
+
+    private static HandlerThread startEngineThread() {
+        HandlerThread thread = new HandlerThread("GameEngine");
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Render commands from the engine thread.
+     */
     Handler mHandler = new Handler() {
         @Override
         public void handleMessage(Message msg) {
             String SUB_TAG = "Handler::handleMessage()";
+
+            switch (msg.what) {
+            case MSG_TYPE_SHOW_SQUARE:
+                if (mDrawView != null) {
+                    mDrawView.setmSquaresDrawnFromIndex(msg.arg1);
+                }
+                break;
+
+            case MSG_TYPE_HIDE_SQUARES:
+                if (mDrawView != null) {
+                    mDrawView.disableAllSquares();
+                }
+                break;
+
+            case MSG_TYPE_BUTTON_FEEDBACK:
+                // arg1: Guess.AUDIO or Guess.VISUAL, arg2: 1 if correct.
+                setButtonFeedback((msg.arg1 == Guess.AUDIO) ? mButtonAudio : mButtonVisual, msg.arg2 != 0);
+                break;
+
+            case MSG_TYPE_RESET_FEEDBACK:
+                resetButtonsFeedback();
+                break;
+
+            case MSG_TYPE_SHOW_ALERT:
+                Log.d(TAG+SUB_TAG, "MSG_TYPE_SHOW_ALERT");
+                AlertDialog alert = Alerts.showAlert(mResources.getString(R.string.alert_new_session),
+                                                     (String) msg.obj,
+                                                     me,
+                                                     mContext,
+                                                     mEngineHandler,
+                                                     MSG_TYPE_START_BLOCK);
+                alert.setOnDismissListener(new DialogInterface.OnDismissListener() {
+                    public void onDismiss(DialogInterface dialog) {
+                        setmAlertDialog(null);
+                    }
+                });
+                setmAlertDialog(alert);
+                alert.show();
+                break;
+            }
+        }
+
+    };
+
+    Handler mEngineHandler = new Handler(mEngineThread.getLooper()) {
+        @Override
+        public void handleMessage(Message msg) {
+            String SUB_TAG = "EngineHandler::handleMessage()";
             boolean result;
 
             switch (msg.what) {
             case MSG_TYPE_CREATE:
                 Log.d(TAG+SUB_TAG, "MSG_TYPE_CREATE");
+                mActivityState = ACT_STATE_CREATING;
                 Time time = new Time();
                 time.setToNow();
                 long millis = time.toMillis(false);
-                mRNG = new MersenneTwister(new int[] {(int) (millis & 0xFFFFFFFF), (int) (millis >> 32)});
+                mRNG = new MersenneTwisterFastSource(new int[] {(int) (millis & 0xFFFFFFFF), (int) (millis >> 32)});
                 mWakeLock.acquire();
+                closeSoundManager();
 
-                initializeLayout();
+                mInitializeStartMillis = SystemClock.uptimeMillis();
 
                 // --------------------------------------------------------------------------------------
-                //  Create SoundManager and GameManager instances in background threads.
+                //  Create and initialize SoundManager and GameManager in parallel: sound loading
+                //  overlaps block generation.
                 // --------------------------------------------------------------------------------------
-                Thread createSoundManager = new Thread(new Runnable() {
-                    public void run() {
-                        mSoundManager = new SoundManager(mDrawView.getContext());
-                        if (mGameManager != null) {
-                            mActivityState = ACT_STATE_CREATED;
-                            mHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE);
+                final RandomSource rng = mRNG;
+                Future<SoundManager> create_sound_manager = mWorkerExecutor.submit(new Callable<SoundManager>() {
+                    public SoundManager call() {
+                        SoundManager sound_manager = new SoundManager(mContext);
+                        initializeSoundManager(sound_manager);
+                        return sound_manager;
+                    } // public SoundManager call()
+                });
+
+                Future<GameManager> create_game_manager = mWorkerExecutor.submit(new Callable<GameManager>() {
+                    public GameManager call() {
+                        GameManager game_manager = new GameManager(rng);
+                        game_manager.setHandlerUI(mEngineHandler);
+                        game_manager.setBlockExecutor(mWorkerExecutor);
+                        try {
+                            game_manager.setBlockLibrary(BlockLibrary.get(mContext));
+                        } catch (IOException e) {
+                            // generate every block live instead.
+                            Log.w(TAG+SUB_TAG, "no block library", e);
                         }
-                    } // public void run()
-                }); // Thread initSoundManager = new Thread(new Runnable()
-
-                Thread createGameManager = new Thread(new Runnable() {
-                    public void run() {
-                        mGameManager = new GameManager(mRNG);
-                        mGameManager.setHandlerUI(mHandler);
-                        
+
                         // restore previous level
                         SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
                         int nInterval = settings.getInt("nInterval", GameManager.NINTERVAL_MIN);
-                        mGameManager.setnInterval(nInterval);
-                        
-                        if (mSoundManager != null) {
-                            mActivityState = ACT_STATE_CREATED;
-                            mHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE);
-                        }
-                    } // public void run()
-                }); // Thread initSoundManager = new Thread(new Runnable()
+                        game_manager.setnInterval(nInterval);
 
-                createSoundManager.run();
-                createGameManager.run();
+                        game_manager.prepareCurrentBlock();
+                        return game_manager;
+                    } // public GameManager call()
+                });
+
+                mSoundManager = await(create_sound_manager);
+                mGameManager = await(create_game_manager);
                 // --------------------------------------------------------------------------------------
 
+                mActivityState = ACT_STATE_CREATED;
+                mEngineHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE_DONE);
                 break;
 
-            case MSG_TYPE_INITIALIZE:
-                Log.d(TAG+SUB_TAG, "MSG_TYPE_INITIALIZE");
+            case MSG_TYPE_NEW_BLOCK:
+                // advanceBlock() swapped in a block generated during the last one, and
+                // the sounds are still loaded, so there is nothing to initialize.
+                Log.d(TAG+SUB_TAG, "MSG_TYPE_NEW_BLOCK");
                 mActivityState = ACT_STATE_INITIALIZING;
-                mIsSoundManagerInitialized = false;
-                mIsGameManagerInitialized = false;
-                //setAllButtonsEnabledState(false);
-                Thread initSoundManager = new Thread(new Runnable() {
-                    public void run() {
-                        boolean result = mSoundManager.initialize();
-                        if (!result) {
-                            try {
-                                Thread.sleep(500);
-                            } catch (InterruptedException e) {
-                                // TODO Auto-generated catch block
-                                e.printStackTrace();
-                            }
-                            mSoundManager.initialize();
-                        }
-                        mIsSoundManagerInitialized = true;
-                        if (mIsGameManagerInitialized) {
-                            mHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE_DONE);
-                        } // if (isGameManagerInitialized)
-                    } // public void run()
-                }); // Thread initSoundManager = new Thread(new Runnable()
-
-                Thread initGameManager = new Thread(new Runnable() {
-                    public void run() {
-                        mGameManager.prepareCurrentBlock();
-                        mIsGameManagerInitialized = true;
-                        if (mIsSoundManagerInitialized) {
-                            mHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE_DONE);
-                        } // if (mIsSoundManagerInitialized)
-                    } // public void run()
-                }); // Thread initGameManager = new Thread(new Runnable()
-
-                initSoundManager.run();
-                initGameManager.run();
+                mEngineHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE_DONE);
                 break;
 
             case MSG_TYPE_INITIALIZE_DONE:
                 Log.d(TAG+SUB_TAG, "MSG_TYPE_INITIALIZE_DONE");
+                mStartupMillis = SystemClock.uptimeMillis() - mInitializeStartMillis;
                 mActivityState = ACT_STATE_WAIT_FOR_ALERT_INTERVAL;
                 String message = "";
                 if (mGameManager.getCurrentBlock() > 0) {
@@ -184,46 +292,40 @@ public class GameActivity extends Activity {
                     message += " ";
                 }
                 message += MessageFormat.format(mResources.getString(R.string.alert_interval_back_message), mGameManager.getnInterval());
-                AlertDialog alert = Alerts.showAlert(mResources.getString(R.string.alert_new_session),
-                                                     message,
-                                                     me,
-                                                     mContext,
-                                                     mHandler,
-                                                     MSG_TYPE_NEW_TRIAL);
-                setmAlertDialog(alert);
-                mAlertDialog.show();
-                getmAlertDialog();
+                mSoundManager.prefetchSound(mGameManager.peekAudio(0));
+                mHandler.obtainMessage(MSG_TYPE_SHOW_ALERT, message).sendToTarget();
+                break;
+
+            case MSG_TYPE_START_BLOCK:
+                Log.d(TAG+SUB_TAG, "MSG_TYPE_START_BLOCK");
+                mBlockStartMillis = SystemClock.uptimeMillis();
+                mTrialScheduler.startBlock();
                 break;
 
             case MSG_TYPE_NEW_TRIAL:
-                Log.d(TAG+SUB_TAG, "MSG_TYPE_NEW_TRIAL. mActivityState: " + mActivityState);
-                mAlertDialog = null;
-                mHandler.removeMessages(MSG_TYPE_GUESS_VALIDATE);
+                long late = mTrialScheduler.recordJitter(msg);
+                Log.d(TAG+SUB_TAG, "MSG_TYPE_NEW_TRIAL. mActivityState: " + mActivityState +
+                      ", trial: " + mTrialScheduler.getCurrentTrial() + ", late: " + late + " ms");
+                mEngineHandler.removeMessages(MSG_TYPE_GUESS_VALIDATE);
                 //setAllButtonsEnabledState(true);
 
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    Log.e("Handler::handleMessage()", "MSG_TYPE_NEW_TRIAL: Sleep interrupted", e);
-                }
-
                 if (mGameManager.isCurrentBlockFinished()) {
                     Log.d(TAG+SUB_TAG, "current block finished");
                     if (mGameManager.isCurrentDayFinished()) {
                         Log.d(TAG+SUB_TAG, "current day finished");
-                        mHandler.sendEmptyMessage(MSG_TYPE_END_OF_DAY);
+                        mEngineHandler.sendEmptyMessage(MSG_TYPE_END_OF_DAY);
                     } else {
                         Log.d(TAG+SUB_TAG, "current day not finished");
+                        mInitializeStartMillis = SystemClock.uptimeMillis();
                         mGameManager.advanceBlock();
-                        mHandler.sendEmptyMessage(MSG_TYPE_INITIALIZE);
+                        mEngineHandler.sendEmptyMessage(MSG_TYPE_NEW_BLOCK);
                     } // if (mGameManager.isCurrentDayFinished())
                 } else {
                     Log.d(TAG+SUB_TAG, "current block not finished");
                     mCurrentTrial = mGameManager.getCurrentTrial();
-                    mDrawView.setmSquaresDrawnFromIndex(mCurrentTrial.visual);
                     mActivityState = ACT_STATE_REDRAWING;
-                    mDrawView.setmHandlerUI(mHandler);
-                    mDrawView.invalidate();
+                    mHandler.obtainMessage(MSG_TYPE_SHOW_SQUARE, mCurrentTrial.visual, 0).sendToTarget();
+                    mTrialScheduler.scheduleCurrentTrial(!mStimulusSelfTimed);
                 } // if (mGameManager.isCurrentBlockFinished())
 
                 break;
@@ -232,9 +334,19 @@ public class GameActivity extends Activity {
                 Log.d("Handler::handleMessage()", "MSG_TYPE_DRAWING_DONE. mActivityState: " + mActivityState);
                 if (mActivityState == ACT_STATE_REDRAWING) {
                     mActivityState = ACT_STATE_REDRAWN;
+                    if (mStartupMillis >= 0) {
+                        long drawn_millis = SystemClock.uptimeMillis() - mBlockStartMillis;
+                        Log.i(TAG+SUB_TAG, "time to first trial: " + (mStartupMillis + drawn_millis) +
+                              " ms excluding the alert (ready: " + mStartupMillis + " ms, first stimulus drawn: " +
+                              drawn_millis + " ms), block: " + mGameManager.getCurrentBlock());
+                        mStartupMillis = -1;
+                    }
+                    mSoundManager.markStimulusDrawn(((long) msg.arg1 << 32) | (msg.arg2 & 0xFFFFFFFFL));
                     mSoundManager.playSound(mCurrentTrial.audio);
-                    mHandler.sendEmptyMessageDelayed(MSG_TYPE_HALT_VISUAL, 500);
-                    mHandler.sendEmptyMessageDelayed(MSG_TYPE_GUESS_VALIDATE, 3000);
+                    int next_audio = mGameManager.peekAudio(1);
+                    if (next_audio >= 0) {
+                        mSoundManager.prefetchSound(next_audio);
+                    }
 
                     if (mCurrentTrial.guessable) {
                         //setAllButtonsEnabledState(true);
@@ -245,7 +357,7 @@ public class GameActivity extends Activity {
                     // as the user wanting to bail out.
                     // TODO interesting.  this causes the unit tests to fail, as this
                     // always gets triggered...I need a better way of detecting "back".
-                    //mHandler.sendEmptyMessage(MSG_TYPE_END_OF_DAY);
+                    //mEngineHandler.sendEmptyMessage(MSG_TYPE_END_OF_DAY);
                 }
                 break;
 
@@ -257,27 +369,49 @@ public class GameActivity extends Activity {
                 }
                 break;
             case MSG_TYPE_GUESS_VALIDATE:
-                Log.d("Handler::handleMessage()", "MSG_TYPE_GUESS_ " + msg.what + ", mActivityState: " + mActivityState);
+                Log.d("Handler::handleMessage()", "MSG_TYPE_GUESS_ " + msg.what + ", mActivityState: " + mActivityState +
+                      ", late: " + mTrialScheduler.recordJitter(msg) + " ms");
+                // the deadline holds even if the stimulus was never reported drawn.
                 if ((mActivityState == ACT_STATE_WAITING_FOR_GUESS) ||
-                        (mActivityState == ACT_STATE_REDRAWN)) {
+                        (mActivityState == ACT_STATE_REDRAWN) ||
+                        (mActivityState == ACT_STATE_REDRAWING)) {
                     Log.d("Handler::handleMessage()", "Accept guess.");
                     validateGuess();
                 }
                 break;
             case MSG_TYPE_HALT_VISUAL:
                 if ((mActivityState == ACT_STATE_WAITING_FOR_GUESS) || (mActivityState == ACT_STATE_REDRAWN)) {
-                    mDrawView.disableAllSquares();
-                    mDrawView.invalidate();
+                    mHandler.sendEmptyMessage(MSG_TYPE_HIDE_SQUARES);
                 }
                 break;
 
             case MSG_TYPE_HALT_AUDIO:
                 break;
 
+            case MSG_TYPE_STIMULUS_REPORT:
+                // arg1: achieved duration in microseconds, arg2: frames shown.
+                mStimulusDurations.record(msg.arg1 * 1000L);
+                Log.d(TAG+SUB_TAG, "MSG_TYPE_STIMULUS_REPORT. duration: " + (msg.arg1 / 1000.0) + " ms, frames: " + msg.arg2);
+                break;
+
             case MSG_TYPE_END_OF_DAY:
                 Log.d("Main::Handler::handleMessage()::MSG_TYPE_END_OF_DAY", "Day is over.");
+                disableAll();
+                saveLevel();
+                saveDayPlan();
+                if (mSoundManager != null) {
+                    Log.i(TAG+SUB_TAG, "Audio latency:\n" + mSoundManager.getLatencyReport());
+                }
+                closeSoundManager();
+                Log.i(TAG+SUB_TAG, "Trial timing:\n" + mTrialScheduler.getJitterReport());
+                if (mStimulusDurations.getCount() > 0) {
+                    Log.i(TAG+SUB_TAG, "Stimulus duration: " + mStimulusDurations);
+                }
                 mActivityState = ACT_STATE_STOP;
                 for(int msg_type : ALL_MESSAGE_TYPES) {
+                    mEngineHandler.removeMessages(msg_type);
+                }
+                for(int msg_type : ALL_RENDER_MESSAGE_TYPES) {
                     mHandler.removeMessages(msg_type);
                 }
                 break;
@@ -296,15 +430,15 @@ public class GameActivity extends Activity {
         mWakeLock = mPowerManager.newWakeLock(PowerManager.SCREEN_BRIGHT_WAKE_LOCK, "DualNBack");
         //mDialog = ProgressDialog.show(mContext, "", mResources.getString(R.string.progress_loading));
         mActivityState = ACT_STATE_CREATING;
+        mTrialScheduler = new TrialScheduler(mEngineHandler);
         restoreMe();
     }
 
     public void initializeLayout() {
-        setContentView(R.layout.main);
-        mDrawView = (DrawView)findViewById(R.id.draw_view);
-        mDrawView.setmHandlerUI(mHandler);
-        mDrawView = (DrawView)findViewById(R.id.draw_view);
-        mDrawView.setmHandlerUI(mHandler);
+        setContentView(USE_SURFACE_RENDERER ? R.layout.main_surface : R.layout.main);
+        mDrawView = (StimulusView)findViewById(R.id.draw_view);
+        mDrawView.setmHandlerUI(mEngineHandler);
+        mStimulusSelfTimed = mDrawView.isStimulusSelfTimed();
         mButtonAudio = (Button)findViewById(R.id.btn_audio);
         mButtonVisual = (Button)findViewById(R.id.btn_visual);
         mAllButtons = new Button[] {mButtonAudio, mButtonVisual};
@@ -315,12 +449,12 @@ public class GameActivity extends Activity {
         // ------------------------------------------------------------------------------------------------------
         mButtonAudio.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                mHandler.sendEmptyMessage(MSG_TYPE_GUESS_AUDIO);
+                mEngineHandler.sendEmptyMessage(MSG_TYPE_GUESS_AUDIO);
             }
         });
         mButtonVisual.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                mHandler.sendEmptyMessage(MSG_TYPE_GUESS_VISUAL);
+                mEngineHandler.sendEmptyMessage(MSG_TYPE_GUESS_VISUAL);
             }
         });
         // ------------------------------------------------------------------------------------------------------
@@ -349,8 +483,8 @@ public class GameActivity extends Activity {
     @Override
     public void onResume() {
         super.onResume();
-        mActivityState = ACT_STATE_CREATING;
-        mHandler.sendEmptyMessage(MSG_TYPE_CREATE);
+        initializeLayout();
+        mEngineHandler.sendEmptyMessage(MSG_TYPE_CREATE);
     }
 
     /**
@@ -361,7 +495,9 @@ public class GameActivity extends Activity {
         super.onPause();
         String SUB_TAG = "onPause()";
         Log.d(TAG+SUB_TAG, "entry");
-        disableAll();
+        if (mDrawView != null) {
+            mDrawView.disableAllSquares();
+        }
         if (mAlertDialog != null) {
             Log.d(TAG+SUB_TAG, "dimissing alert dialog: " + mAlertDialog);
             mAlertDialog.dismiss();
@@ -370,23 +506,113 @@ public class GameActivity extends Activity {
         if (mWakeLock.isHeld()) {
             mWakeLock.release();
         }
-        mHandler.sendMessageAtFrontOfQueue(mHandler.obtainMessage(MSG_TYPE_END_OF_DAY));
+        mEngineHandler.sendMessageAtFrontOfQueue(mEngineHandler.obtainMessage(MSG_TYPE_END_OF_DAY));
     }
     
     @Override
-    protected void onStop(){
-       super.onStop();
-
-      // preferences
-      SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
-      SharedPreferences.Editor editor = settings.edit();
-      
-      // save level
-      int nInterval = mGameManager.getnInterval();
-      editor.putInt("nInterval", nInterval);
-      
-      editor.commit();
-    }  
+    protected void onDestroy() {
+        super.onDestroy();
+        // close on the engine thread, which owns mSoundManager, before it stops.
+        mEngineHandler.post(new Runnable() {
+            public void run() {
+                closeSoundManager();
+                mEngineThread.getLooper().quit();
+            }
+        });
+        mWorkerExecutor.shutdown();
+    }
+
+    /**
+     * Release the sound backend: its SoundPool, players or streaming
+     * threads.  Engine thread only.
+     */
+    private void closeSoundManager() {
+        if (mSoundManager != null) {
+            mSoundManager.close();
+            mSoundManager = null;
+        }
+    }
+
+    /**
+     * Load the SoundManager's sounds, retrying once.
+     */
+    private static void initializeSoundManager(SoundManager sound_manager) {
+        final String SUB_TAG = "::initializeSoundManager()";
+        boolean result = sound_manager.initialize();
+        if (!result) {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                // cancelled; keep the interrupt for the executor and don't retry.
+                Thread.currentThread().interrupt();
+                Log.w(TAG+SUB_TAG, "interrupted before retrying sound initialization", e);
+                return;
+            }
+            sound_manager.initialize();
+        }
+    }
+
+    /**
+     * Wait for a startup task on the engine thread.
+     * @throws RuntimeException if the task failed or the wait was interrupted.
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for session startup", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Session startup failed", e.getCause());
+        }
+    }
+
+    /**
+     * Save the day's seed and N history.  Engine thread only.
+     */
+    private void saveDayPlan() {
+        final String SUB_TAG = "::saveDayPlan()";
+        if (mGameManager == null) {
+            return;
+        }
+        DayPlan plan = mGameManager.getDayPlan();
+        Log.i(TAG+SUB_TAG, plan.toString());
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(openFileOutput(DAY_PLAN_FILE, MODE_PRIVATE));
+            plan.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG+SUB_TAG, "could not save day plan", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(TAG+SUB_TAG, "could not close day plan", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the current level.  Runs on the engine thread, which owns
+     * mGameManager; END_OF_DAY always runs before onStop().
+     */
+    private void saveLevel() {
+        if (mGameManager == null) {
+            return;
+        }
+
+        // preferences
+        SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
+        SharedPreferences.Editor editor = settings.edit();
+
+        // save level
+        int nInterval = mGameManager.getnInterval();
+        editor.putInt("nInterval", nInterval);
+
+        editor.commit();
+    }
     
     
     public void setAllButtonsEnabledState(boolean state) {
@@ -419,10 +645,7 @@ public class GameActivity extends Activity {
         if (mSoundManager != null) {
             mSoundManager.stopPlaying();
         }
-        if (mDrawView != null) {
-            mDrawView.disableAllSquares();
-            mDrawView.invalidate();
-        }
+        mHandler.sendEmptyMessage(MSG_TYPE_HIDE_SQUARES);
     } // private void disableAll()
 
     private void processMessageGuess(int msg_type) {
@@ -432,11 +655,11 @@ public class GameActivity extends Activity {
         switch (msg_type) {
         case MSG_TYPE_GUESS_AUDIO:
             is_correct = mGameManager.evaluatePartialGuess(Guess.AUDIO);
-            setButtonFeedback(mButtonAudio, is_correct);
+            mHandler.obtainMessage(MSG_TYPE_BUTTON_FEEDBACK, Guess.AUDIO, is_correct ? 1 : 0).sendToTarget();
             break;
         case MSG_TYPE_GUESS_VISUAL:
             is_correct = mGameManager.evaluatePartialGuess(Guess.VISUAL);
-            setButtonFeedback(mButtonVisual, is_correct);
+            mHandler.obtainMessage(MSG_TYPE_BUTTON_FEEDBACK, Guess.VISUAL, is_correct ? 1 : 0).sendToTarget();
             break;
         default:
             // TODO raise exception.
@@ -452,10 +675,10 @@ public class GameActivity extends Activity {
         
         mActivityState = ACT_STATE_RECEIVED_GUESS;
         disableAll();
-        resetButtonsFeedback();
+        mHandler.sendEmptyMessage(MSG_TYPE_RESET_FEEDBACK);
         boolean is_correct = mGameManager.evaluateGuess();
         Log.d(TAG+SUB_TAG, "is_correct: " + is_correct);
-        mHandler.sendEmptyMessage(MSG_TYPE_NEW_TRIAL);
+        mTrialScheduler.scheduleNextTrial();
 
     } // private void validateGuess()
     
@@ -476,7 +699,7 @@ public class GameActivity extends Activity {
         return mContext;
     }
 
-    public MersenneTwister getmRNG() {
+    public RandomSource getmRNG() {
         return mRNG;
     }
 
@@ -0,0 +1,107 @@
+/**
+ * Shape of a training day.
+ */
+package com.gyrovague.dualnback;
+
+/**
+ * Block length, targets per block and blocks per day, checked once on
+ * construction.  DEFAULT is the protocol from the PNAS study quoted in
+ * GameManager: blocks of 20 trials after the lead-in, six audio and six
+ * visual targets of which two are in both modalities, 20 blocks a day.
+ * Lab studies can use blocks of up to MAX_BLOCK_SIZE trials with any target
+ * mix.
+ *
+ * Immutable.
+ *
+ * @author asimihsan
+ *
+ */
+public final class GameConfig {
+    public static final int MAX_BLOCK_SIZE = 1000000;
+
+    public static final GameConfig DEFAULT = new GameConfig(20, 6, 6, 2, 20);
+
+    private final int mBlockSize;
+    private final int mAudioTargets;
+    private final int mVisualTargets;
+    private final int mBothTargets;
+    private final int mBlocksPerDay;
+
+    /**
+     * @param blockSize Trials per block after the N lead-in trials.
+     * @param audioTargets Audio targets per block, including those that are also visual targets.
+     * @param visualTargets Visual targets per block, including those that are also audio targets.
+     * @param bothTargets Trials per block that are targets in both modalities.
+     * @param blocksPerDay Blocks in a day's training.
+     * @throws IllegalArgumentException if the targets do not fit in the block,
+     * or any count is out of range.
+     */
+    public GameConfig(int blockSize, int audioTargets, int visualTargets, int bothTargets, int blocksPerDay) {
+        if ((blockSize < 1) || (blockSize > MAX_BLOCK_SIZE)) {
+            throw new IllegalArgumentException("blockSize must be in [1, " + MAX_BLOCK_SIZE + "]: " + blockSize);
+        }
+        if ((audioTargets < 0) || (visualTargets < 0) || (bothTargets < 0)) {
+            throw new IllegalArgumentException("target counts must not be negative");
+        }
+        if (bothTargets > Math.min(audioTargets, visualTargets)) {
+            throw new IllegalArgumentException("bothTargets (" + bothTargets + ") exceeds audioTargets (" +
+                                               audioTargets + ") or visualTargets (" + visualTargets + ")");
+        }
+        if (audioTargets + visualTargets - bothTargets > blockSize) {
+            throw new IllegalArgumentException("targets do not fit in a block of " + blockSize + " trials");
+        }
+        if (blocksPerDay < 1) {
+            throw new IllegalArgumentException("blocksPerDay must be positive: " + blocksPerDay);
+        }
+        this.mBlockSize = blockSize;
+        this.mAudioTargets = audioTargets;
+        this.mVisualTargets = visualTargets;
+        this.mBothTargets = bothTargets;
+        this.mBlocksPerDay = blocksPerDay;
+    }
+
+    /**
+     * Configuration from target ratios rather than counts.  Each count is the
+     * ratio times blockSize, rounded to the nearest trial.
+     * @throws IllegalArgumentException as for the constructor, or if a ratio is outside [0, 1].
+     */
+    public static GameConfig fromRatios(int blockSize, double audioRatio, double visualRatio, double bothRatio,
+                                        int blocksPerDay) {
+        return new GameConfig(blockSize, countFromRatio(blockSize, audioRatio), countFromRatio(blockSize, visualRatio),
+                              countFromRatio(blockSize, bothRatio), blocksPerDay);
+    }
+
+    private static int countFromRatio(int blockSize, double ratio) {
+        if (!(ratio >= 0.0) || (ratio > 1.0)) {
+            throw new IllegalArgumentException("ratio must be in [0, 1]: " + ratio);
+        }
+        return (int) Math.round(ratio * blockSize);
+    }
+
+    public int getBlockSize() {
+        return mBlockSize;
+    }
+
+    public int getAudioTargets() {
+        return mAudioTargets;
+    }
+
+    public int getVisualTargets() {
+        return mVisualTargets;
+    }
+
+    public int getBothTargets() {
+        return mBothTargets;
+    }
+
+    public int getBlocksPerDay() {
+        return mBlocksPerDay;
+    }
+
+    @Override
+    public String toString() {
+        return "GameConfig[blockSize=" + mBlockSize + ", audio=" + mAudioTargets + ", visual=" + mVisualTargets +
+               ", both=" + mBothTargets + ", blocksPerDay=" + mBlocksPerDay + "]";
+    }
+
+}
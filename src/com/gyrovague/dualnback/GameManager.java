@@ -36,14 +36,18 @@
  */
 package com.gyrovague.dualnback;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import android.os.Handler;
 import android.util.Log;
-import ec.util.MersenneTwister;
+
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+import com.gyrovague.dualnback.random.RandomSource;
 
 /**
  * @author asimihsan
@@ -60,30 +64,87 @@ public class GameManager {
     private int mCurrentWrongs;
     private int mCurrentRights;
     private int mnFallBackSessions;
-    private MersenneTwister mRNG;
-    private ArrayList<Integer> mHistoryVisual;
-    private ArrayList<Integer> mHistoryAudio;
+    private RandomSource mRNG;
+
+    /**
+     * The current block's stimuli.  Refilled from each new block rather
+     * than reallocated.
+     */
+    private final StimulusHistory mHistory;
+
+    /**
+     * The current block's correct Guess per trial and target counts, taken
+     * from the block when it starts.
+     */
+    private byte[] mAnswers;
+    private int mVisualTargets;
+    private int mAudioTargets;
+    private int mBothTargets;
     private Handler mHandlerUI;
+
+    /**
+     * The day's seed and the N of each block played so far.  Every block is
+     * generated from this alone, so any of them can be regenerated later.
+     */
+    private DayPlan mDayPlan;
+
+    /**
+     * Candidates for the next block, one per N it could be played at,
+     * generated on mBlockExecutor while the current block is played.  Each
+     * is seeded from the next block's seed in mDayPlan, so the outcome does
+     * not depend on worker scheduling.
+     */
+    private ExecutorService mBlockExecutor;
+    private final HashMap<Integer, Future<Block>> mNextBlocks = new HashMap<Integer, Future<Block>>();
+
+    /**
+     * Offline-validated blocks, or null to always generate live.
+     */
+    private BlockLibrary mBlockLibrary;
+
     private static final double THRESHOLD_ADVANCE = 0.8;
     private static final double THRESHOLD_FALLBACK = 0.5;
     private static final int THRESHOLD_FALLBACK_SESSIONS = 3;
-    private static final int BLOCK_SIZE = 20;
-    private static final int AUDIO_TARGETS_PER_BLOCK = 6;
-    private static final int VISUAL_TARGETS_PER_BLOCK = 6;
-    private static final int BOTH_MODES_PER_BLOCK = 2;
-    private static final int NON_TARGETS_PER_BLOCK = BLOCK_SIZE - AUDIO_TARGETS_PER_BLOCK - VISUAL_TARGETS_PER_BLOCK + BOTH_MODES_PER_BLOCK;
     private static final int NUM_SQUARES = 8;
     private static final int NUM_CONSONANTS = 8;
-    private static final int BLOCKS_PER_DAY = 20;
 
-    GameManager(MersenneTwister mRNG) {
-        this.mRNG = mRNG;
-        commonConstructor();
+    /**
+     * Block size, targets and blocks per day.
+     */
+    private final GameConfig mConfig;
+    private final BlockGenerator mGenerator;
+
+    /**
+     * A game with the study protocol, GameConfig.DEFAULT.
+     * @param mRNG Seeds the day plan.
+     */
+    public GameManager(RandomSource mRNG) {
+        this(mRNG, GameConfig.DEFAULT);
+    }
+
+    /**
+     * A game with the study protocol, GameConfig.DEFAULT, starting at N.
+     * @param RNG Seeds the day plan.
+     * @param nInterval N to start at.
+     */
+    public GameManager(RandomSource RNG, int nInterval) {
+        this(RNG, GameConfig.DEFAULT);
+        setnInterval(nInterval);
     }
 
-    GameManager(MersenneTwister RNG, int nInterval) {
+    /**
+     * A game with its own block size, target counts and blocks per day,
+     * e.g. for a lab study.
+     * @param RNG Seeds the day plan.
+     * @param config Already validated by GameConfig's constructor.
+     */
+    public GameManager(RandomSource RNG, GameConfig config) {
         this.mRNG = RNG;
-        this.mNInterval = nInterval;
+        this.mConfig = config;
+        this.mGenerator = new BlockGenerator(config, NUM_SQUARES, NUM_CONSONANTS);
+        this.mHistory = new StimulusHistory(config.getBlockSize() + NINTERVAL_MIN);
+        this.mAnswers = new byte[config.getBlockSize() + NINTERVAL_MIN];
+        this.mDayPlan = new DayPlan(RNG.nextLong());
         commonConstructor();
     }
 
@@ -98,26 +159,27 @@ public class GameManager {
     }
 
     public Trial getCurrentTrial() {
-        int current_audio = mHistoryAudio.get(mCurrentTrial);
-        int current_visual = mHistoryVisual.get(mCurrentTrial);
+        int current_audio = mHistory.getAudio(mCurrentTrial);
+        int current_visual = mHistory.getVisual(mCurrentTrial);
         boolean guessable = (mCurrentTrial > (mNInterval - 1)) ? true : false;
         return new Trial(current_audio, current_visual, guessable);
     }
 
-    private int getCurrentCorrectAnswer() {
-        int previous_audio = mHistoryAudio.get(mCurrentTrial - mNInterval);
-        int previous_visual = mHistoryVisual.get(mCurrentTrial - mNInterval);
-        int current_audio = mHistoryAudio.get(mCurrentTrial);
-        int current_visual = mHistoryVisual.get(mCurrentTrial);
-        int correct_answer = Guess.NONE;
-        if (current_visual == previous_visual) {
-            correct_answer |= Guess.VISUAL;
-        } 
-        if (current_audio == previous_audio) {
-            correct_answer |= Guess.AUDIO;
+    /**
+     * Look ahead in the current block's audio stream.
+     * @param ahead Number of trials after the current one; 0 is the current trial.
+     * @return The consonant index that trial will play, or -1 past the end of the block.
+     */
+    public int peekAudio(int ahead) {
+        int trial = mCurrentTrial + ahead;
+        if (trial >= mGenerator.getBlockLength(mNInterval)) {
+            return -1;
         }
-        return correct_answer;
+        return mHistory.getAudio(trial);
+    }
 
+    private int getCurrentCorrectAnswer() {
+        return mAnswers[mCurrentTrial];
     } // private int getCurrentCorrectAnswer()
 
     public boolean evaluatePartialGuess(int guess) {
@@ -182,128 +244,192 @@ public class GameManager {
             }
         }
         mCurrentBlock ++;
-        prepareCurrentBlock();
+        startBlock(takeNextBlock(mNInterval));
     } // public void advanceBlock()
 
     public boolean isCurrentBlockFinished() {
-        return (mCurrentTrial >= (BLOCK_SIZE + mNInterval));
+        return (mCurrentTrial >= mGenerator.getBlockLength(mNInterval));
     }
 
     public boolean isCurrentDayFinished() {
-        return (mCurrentBlock >= (BLOCKS_PER_DAY));
+        return (mCurrentBlock >= mConfig.getBlocksPerDay());
     }
 
+    /**
+     * Generate the current block at the current N, synchronously.  Used at
+     * the start of a session; later blocks come from advanceBlock().
+     */
     public void prepareCurrentBlock() {
+        cancelNextBlocks();
+        startBlock(generateBlock(mDayPlan.getBlockSeed(mCurrentBlock), mNInterval));
+    } // public void prepareCurrentBlock()
+
+    /**
+     * Replay a day, for example one restored with DayPlan.readFrom().  Call
+     * before prepareCurrentBlock().
+     */
+    public void setDayPlan(DayPlan dayPlan) {
+        cancelNextBlocks();
+        mDayPlan = dayPlan;
+    }
+
+    public DayPlan getDayPlan() {
+        return mDayPlan;
+    }
+
+    /**
+     * Regenerate a block already played today, e.g. to audit answers.  Uses
+     * the source the day plan recorded for the block, whatever this
+     * GameManager would use for a new block.
+     * @param block At most getCurrentBlock().
+     * @return The block's stimuli, exactly as they were played.
+     * @throws IllegalStateException if the block came from a generator or
+     * library other than the ones this GameManager has, so it can't be
+     * reproduced.
+     */
+    public StimulusHistory regenerateBlock(int block) {
+        long seed = mDayPlan.getBlockSeed(block);
+        int nInterval = mDayPlan.getNInterval(block);
+        long source_id = mDayPlan.getSourceId(block);
+        StimulusHistory history = new StimulusHistory(mGenerator.getBlockLength(nInterval));
+        if (mDayPlan.getSource(block) == DayPlan.SOURCE_LIBRARY) {
+            BlockLibrary library = mBlockLibrary;
+            if ((library == null) || (library.getIdentity() != source_id) ||
+                    !library.covers(mConfig, NUM_SQUARES, NUM_CONSONANTS, nInterval)) {
+                throw new IllegalStateException("block " + block + " came from block library " +
+                                                Long.toHexString(source_id) + ", which is not loaded");
+            }
+            library.fill(nInterval, seed, history);
+        } else {
+            if (mGenerator.getIdentity() != source_id) {
+                throw new IllegalStateException("block " + block + " came from block generator " +
+                                                Long.toHexString(source_id) + ", not this one, " +
+                                                Long.toHexString(mGenerator.getIdentity()));
+            }
+            mGenerator.generate(newBlockRNG(seed, nInterval), nInterval, history);
+        }
+        return history;
+    }
+
+    /**
+     * Pre-validated blocks to use instead of live generation, for every N
+     * the library covers under this configuration.  Changing it changes
+     * which block a seed picks, so set it before prepareCurrentBlock().
+     */
+    public void setBlockLibrary(BlockLibrary library) {
+        mBlockLibrary = library;
+    }
+
+    /**
+     * Worker for speculative generation of the next block.  Without one,
+     * advanceBlock() generates synchronously.
+     */
+    public void setBlockExecutor(ExecutorService executor) {
+        mBlockExecutor = executor;
+    }
+
+    private void startBlock(Block block) {
         mCurrentTrial = 0;
         mCurrentWrongs = 0;
         mCurrentRights = 0;
-        
-        mHistoryVisual = new ArrayList<Integer>(BLOCK_SIZE);
-        mHistoryAudio = new ArrayList<Integer>(BLOCK_SIZE);
-
-        int numberNonTargets = NON_TARGETS_PER_BLOCK;
-        int numberAudioTargets = AUDIO_TARGETS_PER_BLOCK - BOTH_MODES_PER_BLOCK;
-        int numberVisualTargets = VISUAL_TARGETS_PER_BLOCK - BOTH_MODES_PER_BLOCK;
-        int numberBothTargets = BOTH_MODES_PER_BLOCK;
-        int marker = 0;
-        mHistoryVisual.clear();
-        mHistoryAudio.clear();
-
-        // the first N entries will be completely random, since there can be
-        // no repetitions.
-        while (marker <= mNInterval) {
-            mHistoryVisual.add(mRNG.nextInt(NUM_SQUARES));
-            mHistoryAudio.add(mRNG.nextInt(NUM_CONSONANTS));
-            marker += 1;
+        mHistory.copyFrom(block.history);
+        if (mAnswers.length < block.getLength()) {
+            mAnswers = new byte[block.getLength()];
         }
+        System.arraycopy(block.answers, 0, mAnswers, 0, block.getLength());
+        mVisualTargets = block.getVisualTargetCount();
+        mAudioTargets = block.getAudioTargetCount();
+        mBothTargets = block.getBothTargetCount();
+        mDayPlan.recordBlock(mCurrentBlock, block.nInterval, block.source, block.sourceId);
+        Log.d(TAG, "block " + mCurrentBlock + ", N = " + mNInterval + ": " + mVisualTargets + " visual, " +
+              mAudioTargets + " audio, " + mBothTargets + " both targets");
+        prepareNextBlocks();
+    }
 
-        final int NON_TARGET = 0;
-        final int AUDIO_TARGET = 1;
-        final int VISUAL_TARGET = 2;
-        final int BOTH_TARGETS = 3;
-        Set<Integer> target_types = new HashSet<Integer>(Arrays.asList(new Integer[] {NON_TARGET, AUDIO_TARGET, VISUAL_TARGET, BOTH_TARGETS}));
-        Integer target_types_list[] = new Integer[target_types.size()];
-        target_types_list = target_types.toArray(target_types_list);
-        boolean choice_invalid;
-        final int limit = BLOCK_SIZE + mNInterval;
-
-        while (marker <= limit) {
-            choice_invalid = false;
-            int previous_visual = mHistoryVisual.get(marker - mNInterval);
-            int previous_audio = mHistoryAudio.get(marker - mNInterval);
-            int choice = target_types_list[mRNG.nextInt(target_types_list.length)];
-            switch(choice) {
-            case NON_TARGET:
-                // non-target
-                if (numberNonTargets > 0) {
-                    mHistoryVisual.add(nextIntExceptN(NUM_SQUARES, previous_visual));
-                    mHistoryAudio.add(nextIntExceptN(NUM_CONSONANTS, previous_audio));
-                    numberNonTargets--;
-                    marker += 1;
-                }
-                if (numberNonTargets <= 0) {
-                    choice_invalid = true;
-                }
-
-                break;
-
-            case AUDIO_TARGET:
-                // audio-only target
-                if (numberAudioTargets > 0) {
-                    mHistoryVisual.add(nextIntExceptN(NUM_SQUARES, previous_visual));
-                    mHistoryAudio.add(previous_audio);
-                    numberAudioTargets--;
-                    marker += 1;
-                }
-                if (numberAudioTargets <= 0) {
-                    choice_invalid = true;
-                }
-                break;
-
-            case VISUAL_TARGET:
-                // visual-only target
-                if (numberVisualTargets > 0) {
-                    mHistoryVisual.add(previous_visual);
-                    mHistoryAudio.add(nextIntExceptN(NUM_CONSONANTS, previous_audio));
-                    numberVisualTargets--;
-                    marker += 1;
-                }
-                if (numberVisualTargets <= 0) {
-                    choice_invalid = true;
-                }
-                break;
-
-            case BOTH_TARGETS:
-                // both target
-                if (numberBothTargets > 0) {
-                    mHistoryVisual.add(previous_visual);
-                    mHistoryAudio.add(previous_audio);
-                    numberBothTargets--;
-                    marker += 1;
-                }
-                if (numberBothTargets <= 0) {
-                    choice_invalid = true;
-                }
-                break;
+    /**
+     * Start generating the next block for every N the current block can
+     * lead to: one less (not below NINTERVAL_MIN), the same, and one more.
+     */
+    private void prepareNextBlocks() {
+        cancelNextBlocks();
+        if (mBlockExecutor == null) {
+            return;
+        }
+        final long seed = mDayPlan.getBlockSeed(mCurrentBlock + 1);
+        for (int n = Math.max(mNInterval - 1, NINTERVAL_MIN); n <= mNInterval + 1; n++) {
+            final int nInterval = n;
+            try {
+                mNextBlocks.put(nInterval, mBlockExecutor.submit(new Callable<Block>() {
+                    public Block call() {
+                        return generateBlock(seed, nInterval);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // executor shut down; advanceBlock() will generate synchronously.
+                Log.w(TAG, "speculative block generation rejected", e);
+                return;
             }
+        }
+    }
 
-            if (choice_invalid && target_types.contains(choice)) {
-                target_types.remove(choice);
-                target_types_list = new Integer[target_types.size()];
-                target_types_list = target_types.toArray(target_types_list);
-            } // if (choice_invalid && target_types.contains(choice))
-        } // while (marker <= limit)
-
-    } // private void prepareCurrentBlock()
+    /**
+     * @return The speculatively generated next block for nInterval, or a
+     * freshly generated one if there is none.
+     */
+    private Block takeNextBlock(int nInterval) {
+        final String SUB_TAG = "::takeNextBlock()";
+        Future<Block> future = mNextBlocks.remove(nInterval);
+        Block block = null;
+        if (future != null) {
+            try {
+                block = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w(TAG + SUB_TAG, "interrupted waiting for next block", e);
+            } catch (ExecutionException e) {
+                Log.e(TAG + SUB_TAG, "next block generation failed", e.getCause());
+            }
+        }
+        cancelNextBlocks();
+        if (block == null) {
+            Log.d(TAG + SUB_TAG, "no next block ready for N = " + nInterval + ", generating");
+            block = generateBlock(mDayPlan.getBlockSeed(mCurrentBlock), nInterval);
+        }
+        return block;
+    }
 
-    private int nextIntExceptN(int limit, int n) {
-        int result = n;
-        while (result == n) {
-            result = mRNG.nextInt(limit);
+    private void cancelNextBlocks() {
+        for (Future<Block> future : mNextBlocks.values()) {
+            future.cancel(false);
         }
-        return result;
+        mNextBlocks.clear();
     }
-    
+
+    /**
+     * Each block's RNG is only ever used by the thread generating it, so
+     * it need not be synchronized.
+     */
+    private static RandomSource newBlockRNG(long blockSeed, int nInterval) {
+        return new MersenneTwisterFastSource(new int[] {(int) blockSeed, (int) (blockSeed >>> 32), nInterval});
+    }
+
+    /**
+     * Generate a block.  Touches only GameManager state that is fixed while
+     * blocks are generated, so runs on any thread.
+     * @param blockSeed From mDayPlan.
+     * @param nInterval N to generate the block for.
+     */
+    private Block generateBlock(long blockSeed, int nInterval) {
+        StimulusHistory history = new StimulusHistory(mGenerator.getBlockLength(nInterval));
+        BlockLibrary library = mBlockLibrary;
+        if ((library != null) && library.covers(mConfig, NUM_SQUARES, NUM_CONSONANTS, nInterval)) {
+            library.fill(nInterval, blockSeed, history);
+            return new Block(nInterval, history, DayPlan.SOURCE_LIBRARY, library.getIdentity());
+        }
+        mGenerator.generate(newBlockRNG(blockSeed, nInterval), nInterval, history);
+        return new Block(nInterval, history, DayPlan.SOURCE_GENERATOR, mGenerator.getIdentity());
+    } // private Block generateBlock(long blockSeed, int nInterval)
+
     public double getRate() {
         return mRate;
     }
@@ -323,5 +449,30 @@ public class GameManager {
     public int getCurrentBlock() {
         return mCurrentBlock;
     }
+
+    public GameConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * @return Visual targets in the current block, including those that are also audio targets.
+     */
+    public int getVisualTargetCount() {
+        return mVisualTargets;
+    }
+
+    /**
+     * @return Audio targets in the current block, including those that are also visual targets.
+     */
+    public int getAudioTargetCount() {
+        return mAudioTargets;
+    }
+
+    /**
+     * @return Trials in the current block that are targets in both modalities.
+     */
+    public int getBothTargetCount() {
+        return mBothTargets;
+    }
     
 }
@@ -0,0 +1,204 @@
+/**
+ * Paints the stimulus grid onto a Canvas.
+ */
+package com.gyrovague.dualnback;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * The drawing shared by DrawView and SurfaceDrawView: the eight squares
+ * around a perpetual white cross.  Square geometry is precomputed into
+ * primitive arrays and the static parts are cached in a bitmap on every
+ * size change, so draw() allocates nothing.
+ *
+ * @author asimihsan
+ *
+ */
+final class GridPainter {
+    private static final int[] SQUARES = DrawView.mPossibleSquares;
+    private static final int NUM_SQUARES = SQUARES.length;
+    private static final float SQUARE_CORNER_RADIUS = 5.0f;
+
+    /**
+     * Drawing bounds for each square location, in the same order as
+     * DrawView.mPossibleSquares: left, top, right, bottom.
+     */
+    private final float[] mSquareBounds = new float[4 * NUM_SQUARES];
+    private final RectF mSquareRect = new RectF();
+    private int mSquareSize;
+
+    /**
+     * Handle the perpetual white cross: two lines, four coordinates each.
+     */
+    private final float[] mCrossLines = new float[8];
+    private final Paint mPaintWhiteCross = new Paint();
+
+    private final Paint mPaintSquareOn = new Paint();
+    private final Paint mPaintSquareOff = new Paint();
+
+    /**
+     * The white cross and the empty squares only change with the size, so
+     * they are rasterized once per size into this bitmap and blitted every
+     * frame.
+     */
+    private Bitmap mStaticLayer;
+    private int mWidth;
+    private int mHeight;
+
+    GridPainter(Resources resources) {
+        mPaintWhiteCross.setColor(resources.getColor(R.color.solid_white));
+        mPaintSquareOn.setColor(resources.getColor(R.color.solid_blue));
+        mPaintSquareOff.setColor(resources.getColor(R.drawable.transparent_background));
+    }
+
+    /**
+     * Lay the grid out for a new size and rebuild the static layer.
+     */
+    void setSize(int left, int top, int width, int height) {
+        setupDrawingCoordinates(left, top, width, height);
+        mPaintWhiteCross.setStrokeWidth(mSquareSize / 32);
+        mWidth = width;
+        mHeight = height;
+        buildStaticLayer();
+    }
+
+    /**
+     * Rebuild the static layer after recycle(), if a size has been set.
+     * Views are not resized when reattached at the same size, so this is
+     * how they get the layer back.
+     */
+    void restore() {
+        if (mStaticLayer == null) {
+            buildStaticLayer();
+        }
+    }
+
+    /**
+     * Runs every frame, so must not allocate or log.
+     * @param squares Bit field of DrawView square flags to show.
+     */
+    void draw(Canvas canvas, int squares) {
+        if (mStaticLayer != null) {
+            canvas.drawBitmap(mStaticLayer, 0, 0, null);
+        }
+
+        // only the enabled squares; the empty ones are part of the static layer.
+        for (int i = 0; (i < NUM_SQUARES) && (squares != 0); i++) {
+            if ((squares & SQUARES[i]) != 0) {
+                drawSquare(canvas, i, mPaintSquareOn);
+                squares &= ~SQUARES[i];
+            }
+        }
+    }
+
+    /**
+     * @param index Index into DrawView.mPossibleSquares.
+     * @param out Receives the square's bounds, grown by a pixel on each side.
+     */
+    void getSquareBounds(int index, Rect out) {
+        final float[] bounds = mSquareBounds;
+        out.set((int) bounds[4*index] - 1, (int) bounds[4*index+1] - 1,
+                (int) bounds[4*index+2] + 1, (int) bounds[4*index+3] + 1);
+    }
+
+    /**
+     * Free the static layer.  The next setSize() or restore() rebuilds it.
+     */
+    void recycle() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+        }
+    }
+
+    /**
+     * Rasterize the white cross and the empty squares.
+     */
+    private void buildStaticLayer() {
+        recycle();
+        if ((mWidth <= 0) || (mHeight <= 0)) {
+            return;
+        }
+        mStaticLayer = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mStaticLayer);
+        drawWhiteCross(canvas);
+        for (int i = 0; i < NUM_SQUARES; i++) {
+            drawSquare(canvas, i, mPaintSquareOff);
+        }
+    }
+
+    private void drawSquare(Canvas canvas, int index, Paint paint) {
+        final float[] bounds = mSquareBounds;
+        mSquareRect.set(bounds[4*index], bounds[4*index+1], bounds[4*index+2], bounds[4*index+3]);
+        canvas.drawRoundRect(mSquareRect, SQUARE_CORNER_RADIUS, SQUARE_CORNER_RADIUS, paint);
+    }
+
+    /**
+     * Draw the perpetual white cross.
+     */
+    private void drawWhiteCross(Canvas canvas) {
+        canvas.drawLines(mCrossLines, mPaintWhiteCross);
+    }
+
+    /**
+     * Set up internal tracking of where the squares in the grid, for later
+     * painting.
+     */
+    private void setupDrawingCoordinates(int left, int top, int width, int height) {
+        /**
+         * Calculations.
+         */
+        int canvas = Math.min(width, height);
+        int square = canvas / 4;
+        mSquareSize = square;
+        int gap = square / 4;
+
+        /**
+         * Set up all of the squares' locations, in mPossibleSquares order.
+         * (left, top, right, bottom)
+         */
+        setSquareBounds(0, left+1*gap+0*square, top+1*gap+0*square, left+1*gap+1*square, top+1*gap+1*square);   // TOP_LEFT
+        setSquareBounds(1, left+2*gap+1*square, top+1*gap+0*square, left+2*gap+2*square, top+1*gap+1*square);   // TOP_MIDDLE
+        setSquareBounds(2, left+3*gap+2*square, top+1*gap+0*square, left+3*gap+3*square, top+1*gap+1*square);   // TOP_RIGHT
+        setSquareBounds(3, left+1*gap+0*square, top+2*gap+1*square, left+1*gap+1*square, top+2*gap+2*square);   // MIDDLE_LEFT
+        setSquareBounds(4, left+3*gap+2*square, top+2*gap+1*square, left+3*gap+3*square, top+2*gap+2*square);   // MIDDLE_RIGHT
+        setSquareBounds(5, left+1*gap+0*square, top+3*gap+2*square, left+1*gap+1*square, top+3*gap+3*square);   // BOTTOM_LEFT
+        setSquareBounds(6, left+2*gap+1*square, top+3*gap+2*square, left+2*gap+2*square, top+3*gap+3*square);   // BOTTOM_MIDDLE
+        setSquareBounds(7, left+3*gap+2*square, top+3*gap+2*square, left+3*gap+3*square, top+3*gap+3*square);   // BOTTOM_RIGHT
+
+        /**
+         * The middle-middle square holds the perpetual white cross.
+         */
+        int crossLeft = left+2*gap+1*square;
+        int crossTop = top+2*gap+1*square;
+        int crossRight = left+2*gap+2*square;
+        int crossBottom = top+2*gap+2*square;
+        int crossWidth = crossRight - crossLeft;
+        int crossHeight = crossBottom - crossTop;
+
+        // vertical stroke.
+        mCrossLines[0] = crossLeft + crossWidth / 2;
+        mCrossLines[1] = crossTop + crossHeight / 5;
+        mCrossLines[2] = crossLeft + crossWidth / 2;
+        mCrossLines[3] = crossBottom - crossHeight / 5;
+
+        // horizontal stroke.
+        mCrossLines[4] = crossLeft + crossWidth / 5;
+        mCrossLines[5] = crossTop + crossHeight / 2;
+        mCrossLines[6] = crossRight - crossWidth / 5;
+        mCrossLines[7] = crossTop + crossHeight / 2;
+    } // private void setupDrawingCoordinates()
+
+    private void setSquareBounds(int index, int left, int top, int right, int bottom) {
+        mSquareBounds[4*index] = left;
+        mSquareBounds[4*index+1] = top;
+        mSquareBounds[4*index+2] = right;
+        mSquareBounds[4*index+3] = bottom;
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Fixed-bucket histogram of durations.
+ */
+package com.gyrovague.dualnback;
+
+/**
+ * Durations are recorded in nanoseconds and bucketed by millisecond upper
+ * bounds.  Buckets never change, so recording allocates nothing and two
+ * sessions' histograms can be compared bucket by bucket.
+ *
+ * Synchronized, since samples may arrive from audio callback threads.
+ *
+ * @author asimihsan
+ *
+ */
+public class LatencyHistogram {
+    /**
+     * Inclusive upper bounds of each bucket, in milliseconds.  One more
+     * bucket catches everything above the last bound.
+     */
+    private static final long[] BUCKET_BOUNDS_MS = new long[] {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+    private static final long NANOS_PER_MS = 1000000L;
+
+    private final String mName;
+    private final int[] mCounts = new int[BUCKET_BOUNDS_MS.length + 1];
+    private int mCount;
+    private long mSumNanos;
+    private long mMinNanos = Long.MAX_VALUE;
+    private long mMaxNanos = Long.MIN_VALUE;
+
+    public LatencyHistogram(String name) {
+        this.mName = name;
+    }
+
+    /**
+     * Record one duration.
+     * @param nanos Duration in nanoseconds.  Negative durations are counted as zero.
+     */
+    public synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = 0;
+        while ((bucket < BUCKET_BOUNDS_MS.length) && (nanos > BUCKET_BOUNDS_MS[bucket] * NANOS_PER_MS)) {
+            bucket++;
+        }
+        mCounts[bucket]++;
+        mCount++;
+        mSumNanos += nanos;
+        mMinNanos = Math.min(mMinNanos, nanos);
+        mMaxNanos = Math.max(mMaxNanos, nanos);
+    }
+
+    /**
+     * Record the time between two System.nanoTime() readings.
+     */
+    public void record(long startNanos, long endNanos) {
+        record(endNanos - startNanos);
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSumNanos = 0;
+        mMinNanos = Long.MAX_VALUE;
+        mMaxNanos = Long.MIN_VALUE;
+    }
+
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return Mean duration in milliseconds, or 0 if nothing was recorded.
+     */
+    public synchronized double getMeanMillis() {
+        return (mCount == 0) ? 0.0 : (1.0 * mSumNanos / mCount / NANOS_PER_MS);
+    }
+
+    /**
+     * A one-line dump, e.g. "play->onset n=3 mean=4.1ms min=3.2ms max=5.0ms [<=5ms:3]".
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(mName);
+        builder.append(" n=").append(mCount);
+        if (mCount == 0) {
+            return builder.toString();
+        }
+        builder.append(" mean=").append(formatMillis(mSumNanos / mCount));
+        builder.append(" min=").append(formatMillis(mMinNanos));
+        builder.append(" max=").append(formatMillis(mMaxNanos));
+        builder.append(" [");
+        boolean first = true;
+        for (int i = 0; i < mCounts.length; i++) {
+            if (mCounts[i] == 0) {
+                continue;
+            }
+            if (!first) {
+                builder.append(", ");
+            }
+            first = false;
+            if (i < BUCKET_BOUNDS_MS.length) {
+                builder.append("<=").append(BUCKET_BOUNDS_MS[i]);
+            } else {
+                builder.append(">").append(BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]);
+            }
+            builder.append("ms:").append(mCounts[i]);
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return (nanos / 100000L) / 10.0 + "ms";
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Memory-map an asset.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+/**
+ * @author asimihsan
+ *
+ */
+final class MappedAsset {
+    private static final String TAG = "MappedAsset";
+
+    private MappedAsset() {
+    }
+
+    /**
+     * Map an asset read-only.  Assets stored uncompressed in the APK are
+     * mapped in place.  aapt compresses unknown extensions, and those can't
+     * be opened as a file descriptor, so they are copied into the
+     * application's files directory and mapped from there.  The copy is
+     * redone whenever the installed APK is newer than it, so an update
+     * never leaves a stale asset mapped.
+     * @param context Context whose assets to use.
+     * @param name Asset path.
+     */
+    static MappedByteBuffer map(Context context, String name) throws IOException {
+        final String SUB_TAG = "::map()";
+        AssetFileDescriptor afd = null;
+        try {
+            afd = context.getAssets().openFd(name);
+        } catch (IOException e) {
+            Log.d(TAG + SUB_TAG, name + " is compressed, mapping a copy");
+        }
+        if (afd != null) {
+            FileInputStream in = afd.createInputStream();
+            try {
+                return in.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+            } finally {
+                in.close();
+                afd.close();
+            }
+        }
+
+        File copy = context.getFileStreamPath(name.replace('/', '_'));
+        File apk = getApk(context);
+        if (!copy.exists() || (copy.lastModified() < apk.lastModified())) {
+            Log.d(TAG + SUB_TAG, "copying " + name + " out of " + apk);
+            copyAsset(context, name, copy);
+        }
+        FileInputStream in = new FileInputStream(copy);
+        try {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, copy.length());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The installed APK.  Context.getPackageCodePath() is not in API 3.
+     */
+    private static File getApk(Context context) throws IOException {
+        try {
+            return new File(context.getPackageManager().getApplicationInfo(context.getPackageName(), 0).sourceDir);
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new IOException("Own package not found: " + context.getPackageName());
+        }
+    }
+
+    private static void copyAsset(Context context, String name, File destination) throws IOException {
+        File partial = new File(destination.getPath() + ".partial");
+        InputStream in = context.getAssets().open(name);
+        FileOutputStream out = new FileOutputStream(partial);
+        try {
+            byte buf[] = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+        if (!partial.renameTo(destination)) {
+            throw new IOException("Could not rename " + partial + " to " + destination);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Play consonants through pooled MediaPlayers.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.IOException;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * The original playback path, kept so it can be compared against the other
+ * backends.  A player has to be prepare()d before every start(), which is
+ * slow, so prefetch() prepares the next consonant on a worker thread during
+ * the interstimulus interval.  At most two players are prepared at once:
+ * the one playing and the one prefetched.
+ *
+ * @author asimihsan
+ *
+ */
+class MediaPlayerBackend implements SoundBackend {
+    private static final String TAG = "MediaPlayerBackend";
+
+    // ------------------------------------------------------------------------------
+    // don't try to create() every consonant up front. this'll mean we try
+    // to prepare() all of them, which in 1.5 will cause us to exhaust
+    // MAX_OPENCORE_INSTANCES = 25 if we accidentally attempt to allocate
+    // three SoundManagers (happened in an older version), or even worse
+    // in 1.6+ cause us to fail the prepare() call after four or five
+    // consonants.
+    //
+    // bottom line is that we're expected to have a minimal number of
+    // MediaPlayer instances prepared at any given time, so they come from
+    // a pool just big enough for the playing and the prefetched consonant.
+    // ------------------------------------------------------------------------------
+    private static final int POOL_CAPACITY = 2;
+
+    private final Context mContext;
+    private int[] mConsonants;
+    private int mNextSound = -1;
+    private HandlerThread mPrepareThread;
+    private Handler mPrepareHandler;
+
+    /**
+     * Guards the pool and the entries below.  mPrepared is prepared but not
+     * yet started; mCurrent has been started.
+     */
+    private final Object mLock = new Object();
+    private MediaPlayerPool mPool;
+    private MediaPlayerPool.Entry mPrepared;
+    private MediaPlayerPool.Entry mCurrent;
+
+    MediaPlayerBackend(Context context) {
+        this.mContext = context;
+    }
+
+    public boolean load(int[] consonants) {
+        synchronized (mLock) {
+            mConsonants = consonants;
+            mPool = new MediaPlayerPool(mContext, POOL_CAPACITY);
+        }
+        mPrepareThread = new HandlerThread(TAG);
+        mPrepareThread.start();
+        mPrepareHandler = new Handler(mPrepareThread.getLooper());
+        return true;
+    }
+
+    public void setOnsetListener(OnsetListener listener) {
+        // no way to tell when playback really starts.
+    }
+
+    public void play(int index) {
+        synchronized (mLock) {
+            // no-op if the prefetch already finished; the lock waits for one in flight.
+            MediaPlayerPool.Entry entry = prepare(index);
+            if (entry == null) {
+                return;
+            }
+            mPrepared = null;
+            mCurrent = entry;
+            entry.player.seekTo(0);
+            entry.player.start();
+        }
+    }
+
+    public void prefetch(int index) {
+        mNextSound = index;
+        synchronized (mLock) {
+            if ((mCurrent != null) && (mCurrent.consonant == mConsonants[index])) {
+                // still in use; stop() prepares it.
+                return;
+            }
+        }
+        schedulePrepare(index);
+    }
+
+    public void stop() {
+        synchronized (mLock) {
+            if (mCurrent == null) {
+                return;
+            }
+            if (!mCurrent.released) {
+                mCurrent.player.stop();
+                mCurrent.prepared = false;
+            }
+            if ((mNextSound >= 0) && (mCurrent.consonant == mConsonants[mNextSound])) {
+                schedulePrepare(mNextSound);
+            }
+            mCurrent = null;
+        }
+    }
+
+    public void release() {
+        if (mPrepareThread != null) {
+            mPrepareThread.getLooper().quit();
+            try {
+                mPrepareThread.join();
+            } catch (InterruptedException e) {
+                Log.e(TAG + "::release()", "Interrupted waiting for prepare thread", e);
+            }
+            mPrepareThread = null;
+            mPrepareHandler = null;
+        }
+        synchronized (mLock) {
+            if (mPool != null) {
+                mPool.releaseAll();
+                mPool = null;
+            }
+            mPrepared = null;
+            mCurrent = null;
+        }
+        mNextSound = -1;
+    }
+
+    private void schedulePrepare(final int index) {
+        mPrepareHandler.post(new Runnable() {
+            public void run() {
+                synchronized (mLock) {
+                    prepare(index);
+                }
+            }
+        });
+    }
+
+    /**
+     * Prepare a consonant's player, first stopping any other player that was
+     * prepared but never started so that no more than two are ever prepared.
+     * Caller must hold mLock.
+     * @return The prepared entry, or null if the player could not be prepared.
+     */
+    private MediaPlayerPool.Entry prepare(int index) {
+        final String SUB_TAG = "::prepare()";
+        if (mPool == null) {
+            return null;
+        }
+        MediaPlayerPool.Entry entry;
+        try {
+            entry = mPool.acquire(mConsonants[index]);
+        } catch (IOException e) {
+            Log.e(TAG + SUB_TAG, "Could not open consonant " + index, e);
+            return null;
+        }
+        if (entry.prepared) {
+            return entry;
+        }
+        if ((mPrepared != null) && !mPrepared.released) {
+            mPrepared.player.stop();
+            mPrepared.prepared = false;
+        }
+        mPrepared = null;
+        try {
+            entry.player.prepare();
+        } catch (IllegalStateException e) {
+            Log.e(TAG + SUB_TAG, "Could not prepare consonant " + index, e);
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG + SUB_TAG, "Could not prepare consonant " + index, e);
+            return null;
+        }
+        entry.prepared = true;
+        mPrepared = entry;
+        return entry;
+    }
+
+}
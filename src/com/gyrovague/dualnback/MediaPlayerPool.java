@@ -0,0 +1,162 @@
+/**
+ * A small, bounded set of MediaPlayers keyed by consonant.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaPlayer;
+import android.util.Log;
+
+/**
+ * Each MediaPlayer holds a native decoder instance, and the platform only
+ * has a handful of those (see MediaPlayerBackend.load()), so players are
+ * created on demand and the least recently used one is released once the
+ * pool is full.  That keeps the instance count fixed however many
+ * consonants a session uses.
+ *
+ * Not synchronized; the owner must lock around every call.  Public, with
+ * its counters, for MediaPlayerPoolTests.
+ *
+ * @author asimihsan
+ *
+ */
+public final class MediaPlayerPool {
+    private static final String TAG = "MediaPlayerPool";
+
+    /**
+     * A pooled player and what the owner has done with it.
+     */
+    public static final class Entry {
+        public final int consonant;
+        public final MediaPlayer player;
+        boolean prepared;
+        boolean released;
+
+        Entry(int consonant, MediaPlayer player) {
+            this.consonant = consonant;
+            this.player = player;
+        }
+
+        /**
+         * @return Whether the pool has released this entry's player.
+         */
+        public boolean isReleased() {
+            return released;
+        }
+    }
+
+    private final Context mContext;
+    private final int mCapacity;
+    private final LinkedHashMap<Integer, Entry> mEntries;
+    private int mHits;
+    private int mMisses;
+    private int mEvictions;
+
+    /**
+     * @param context Context to open the raw resources with.
+     * @param capacity Most players alive at once.
+     */
+    public MediaPlayerPool(Context context, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.mContext = context;
+        this.mCapacity = capacity;
+
+        // access order, so iteration starts at the least recently used entry.
+        this.mEntries = new LinkedHashMap<Integer, Entry>(capacity + 1, 1.0f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() <= mCapacity) {
+                    return false;
+                }
+                Entry entry = eldest.getValue();
+                entry.player.release();
+                entry.released = true;
+                mEvictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the player for a consonant, creating it on a miss.  A new player
+     * has its data source set but is not prepared.
+     * @param consonant Raw resource ID.
+     * @return The entry, now the most recently used.
+     */
+    public Entry acquire(int consonant) throws IOException {
+        Entry entry = mEntries.get(consonant);
+        if (entry != null) {
+            mHits++;
+            return entry;
+        }
+        mMisses++;
+
+        MediaPlayer player = new MediaPlayer();
+        AssetFileDescriptor afd = mContext.getResources().openRawResourceFd(consonant);
+        try {
+            player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+        } catch (IOException e) {
+            player.release();
+            throw e;
+        } catch (IllegalStateException e) {
+            player.release();
+            throw e;
+        } finally {
+            afd.close();
+        }
+        entry = new Entry(consonant, player);
+        mEntries.put(consonant, entry);
+        return entry;
+    }
+
+    /**
+     * Release every player.  The pool can be used again afterwards.
+     */
+    public void releaseAll() {
+        Log.d(TAG + "::releaseAll()", toString());
+        for (Entry entry : mEntries.values()) {
+            entry.player.release();
+            entry.released = true;
+        }
+        mEntries.clear();
+    }
+
+    public int getHits() {
+        return mHits;
+    }
+
+    public int getMisses() {
+        return mMisses;
+    }
+
+    public int getEvictions() {
+        return mEvictions;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return Players alive now.
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MediaPlayerPool[capacity=" + mCapacity + ", size=" + mEntries.size() + ", hits=" + mHits
+               + ", misses=" + mMisses + ", evictions=" + mEvictions + "]";
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Decoded consonant samples held in memory.
+ */
+package com.gyrovague.dualnback;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One direct ByteBuffer of 16-bit PCM per consonant in use.  Filled once in
+ * SoundManager.initialize() so nothing on the playback path touches a codec.
+ * The buffers are slices of the memory-mapped SampleBank, so filling the
+ * cache copies nothing.
+ *
+ * All samples share a single format, since they are played through one
+ * AudioTrack.
+ *
+ * @author asimihsan
+ *
+ */
+class PcmCache {
+    private ByteBuffer[] mSamples;
+    private int mSampleRate;
+    private int mChannels;
+    private int mFootprintBytes;
+
+    /**
+     * Drop any existing samples and make room for a new set.
+     * @param count Number of consonants that will be loaded.
+     * @param sampleRate Sample rate shared by every sample.
+     * @param channels Channel count shared by every sample.
+     */
+    void reset(int count, int sampleRate, int channels) {
+        mSamples = new ByteBuffer[count];
+        mSampleRate = sampleRate;
+        mChannels = channels;
+        mFootprintBytes = 0;
+    }
+
+    /**
+     * Store a decoded sample.
+     */
+    void put(int index, ByteBuffer sample) {
+        mSamples[index] = sample;
+        mFootprintBytes += sample.capacity();
+    }
+
+    /**
+     * The sample for a consonant.  Only the streaming thread may move its position.
+     */
+    ByteBuffer get(int index) {
+        return mSamples[index];
+    }
+
+    int getSampleRate() {
+        return mSampleRate;
+    }
+
+    int getChannels() {
+        return mChannels;
+    }
+
+    /**
+     * @return Bytes of PCM referenced by the cache.
+     */
+    int getFootprintBytes() {
+        return mFootprintBytes;
+    }
+
+}
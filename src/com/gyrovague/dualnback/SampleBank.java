@@ -0,0 +1,104 @@
+/**
+ * All consonant samples, pre-decoded and packed into one asset.
+ */
+package com.gyrovague.dualnback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import android.content.Context;
+
+/**
+ * Read side of the sample bank written by tools/.../SampleBankPacker at
+ * build time.  The whole bank is mapped once; each sample is a slice of
+ * the mapping, found through a fixed index table.
+ *
+ * Layout, header fields big-endian:
+ *
+ *   int magic 'DNBK', int version, int sample rate, int channels, int count,
+ *   count * (int offset, int length), then 16-bit little-endian PCM.
+ *
+ * Entry i holds the letter ('a' + i); a length of zero means no sample.
+ *
+ * @author asimihsan
+ *
+ */
+final class SampleBank {
+    static final String ASSET_NAME = "consonants.bank";
+    static final int MAGIC = 0x444e424b;    // "DNBK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5 * 4;
+    static final int ENTRY_SIZE = 2 * 4;
+
+    private static SampleBank sInstance;
+
+    private final MappedByteBuffer mBank;
+    private final int mSampleRate;
+    private final int mChannels;
+    private final int mCount;
+
+    private SampleBank(MappedByteBuffer bank) throws IOException {
+        mBank = bank;
+        if ((bank.getInt(0) != MAGIC) || (bank.getInt(4) != VERSION)) {
+            throw new IOException("Not a version " + VERSION + " sample bank");
+        }
+        mSampleRate = bank.getInt(8);
+        mChannels = bank.getInt(12);
+        mCount = bank.getInt(16);
+    }
+
+    /**
+     * The process-wide bank, mapped on first use.  The mapping is read-only
+     * and cheap to keep, so it outlives any one SoundManager.
+     */
+    static synchronized SampleBank get(Context context) throws IOException {
+        if (sInstance == null) {
+            sInstance = new SampleBank(MappedAsset.map(context, ASSET_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Index of a consonant, given its raw resource entry name (e.g. "c").
+     */
+    static int indexOf(String entryName) {
+        return entryName.charAt(0) - 'a';
+    }
+
+    /**
+     * @param index Index returned by indexOf().
+     * @return A direct buffer over the sample, or null if the bank has none.
+     */
+    ByteBuffer getSample(int index) {
+        if ((index < 0) || (index >= mCount)) {
+            return null;
+        }
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        int offset = mBank.getInt(entry);
+        int length = mBank.getInt(entry + 4);
+        if (length == 0) {
+            return null;
+        }
+        ByteBuffer sample = mBank.duplicate();
+        sample.position(offset);
+        sample.limit(offset + length);
+        return sample.slice();
+    }
+
+    int getSampleRate() {
+        return mSampleRate;
+    }
+
+    int getChannels() {
+        return mChannels;
+    }
+
+    /**
+     * @return Size of the whole mapping in bytes.
+     */
+    int getMappedBytes() {
+        return mBank.capacity();
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * A way of turning consonant indices into audible sound.
+ */
+package com.gyrovague.dualnback;
+
+/**
+ * SoundManager decides what to play; a SoundBackend decides how.  Backends are
+ * not synchronized and are only ever driven from the thread that owns the
+ * SoundManager.
+ *
+ * @author asimihsan
+ *
+ */
+interface SoundBackend {
+
+    /**
+     * Told when a consonant actually starts coming out of the audio path.
+     */
+    interface OnsetListener {
+        /**
+         * @param nanos System.nanoTime() at onset.  May be called on any thread.
+         */
+        void onOnset(long nanos);
+    }
+
+    /**
+     * Allocate whatever is needed to play the given consonants.
+     * @param consonants Raw resource IDs, indexed the same way as playSound().
+     * @return false if the backend could not allocate its resources.
+     */
+    boolean load(int[] consonants);
+
+    /**
+     * Backends that can tell when audio really starts report it here;
+     * the others ignore the listener.
+     */
+    void setOnsetListener(OnsetListener listener);
+
+    /**
+     * Start playing a consonant.  Must not block.
+     * @param index Index into the consonants passed to load().
+     */
+    void play(int index);
+
+    /**
+     * Hint that a consonant will be played next.  Backends that keep every
+     * consonant ready ignore this.  Must not block.
+     * @param index Index into the consonants passed to load().
+     */
+    void prefetch(int index);
+
+    /**
+     * Stop whatever is currently playing.
+     */
+    void stop();
+
+    /**
+     * Free everything allocated by load().
+     */
+    void release();
+
+}
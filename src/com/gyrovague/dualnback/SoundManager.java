@@ -3,27 +3,54 @@
  */
 package com.gyrovague.dualnback;
 
-import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
-import android.content.res.Resources;
-import android.content.res.Resources.NotFoundException;
-import android.media.MediaPlayer;
-import ec.util.MersenneTwister;
+
+import com.gyrovague.dualnback.random.RandomSource;
 
 /**
  * @author asimihsan
  *
  */
 public class SoundManager {
-    private static final int NUM_CONSONANTS = 8;
+    /**
+     * Audio stimuli are stored in three bits (StimulusHistory.MAX_STIMULUS),
+     * so a session plays at most eight distinct consonants.
+     */
+    private static final int NUM_CONSONANTS = StimulusHistory.MAX_STIMULUS + 1;
+
+    /**
+     * Playback backends.  MediaPlayer is the original path and prepares a
+     * player on every playSound(); SoundPool decodes once up front and
+     * plays with a single non-blocking call; AudioTrack streams build-time
+     * decoded PCM out of mPcmCache.
+     */
+    public static final int BACKEND_MEDIA_PLAYER    = 1;
+    public static final int BACKEND_SOUND_POOL      = 2;
+    public static final int BACKEND_AUDIO_TRACK     = 3;
+    public static final int DEFAULT_BACKEND         = BACKEND_SOUND_POOL;
 
     private final Context mContext;
-    private final MersenneTwister mRNG;
+    private final RandomSource mRNG;
+    private final SoundBackend mBackend;
+    private final PcmCache mPcmCache = new PcmCache();
     private boolean resourcesAllocated = false;
+
+    /**
+     * Audio onset latency for this session.  Drawn is when DrawView finished
+     * drawing the stimulus square, play is the playSound() call, onset is
+     * when the backend reports that sound is actually coming out (only
+     * backends that can tell report it).  All System.nanoTime().
+     */
+    private final LatencyHistogram mDrawnToPlay = new LatencyHistogram("drawn->play");
+    private final LatencyHistogram mPlayToOnset = new LatencyHistogram("play->onset");
+    private final LatencyHistogram mDrawnToOnset = new LatencyHistogram("drawn->onset");
+    private volatile long mDrawnNanos;
+    private volatile long mPlayNanos;
+    private volatile long mPlayDrawnNanos;
+
     private boolean isPlaying = false;
     private int currentSound;
 
@@ -32,15 +59,24 @@ public class SoundManager {
      */
     private static final int[] mConsonants = new int[] {R.raw.b, R.raw.c, R.raw.d, R.raw.f, R.raw.g, R.raw.h, R.raw.j, R.raw.k, R.raw.l, R.raw.m, R.raw.n, R.raw.p, R.raw.q, R.raw.r, R.raw.s, R.raw.t, R.raw.v, R.raw.w, R.raw.x, R.raw.y, R.raw.z};
     private final int[] mConsonantsInUse = new int[NUM_CONSONANTS];
-    private final MediaPlayer[] mConsonantMediaPlayers = new MediaPlayer[NUM_CONSONANTS];
 
     /**
-     * Constructor.  Create all MediaPlayer instances up front.
+     * Constructor.  Uses the default playback backend.
      * @param context Context within which to play the sounds.
      */
     public SoundManager(Context context) {
+        this(context, DEFAULT_BACKEND);
+    }
+
+    /**
+     * Constructor.
+     * @param context Context within which to play the sounds.
+     * @param backend One of the BACKEND_ constants.
+     */
+    public SoundManager(Context context, int backend) {
         this.mContext = context;
         this.mRNG = null;
+        this.mBackend = createBackend(context, backend);
         
         // use chklqrst
         mConsonantsInUse[0] = R.raw.c;
@@ -54,13 +90,24 @@ public class SoundManager {
     } // SoundManager(Context context)
 
     /**
-     * Constructor.  Create all MediaPlayer instances up front.
+     * Constructor.  Uses the default playback backend.
      * @param context Context within which to play the sounds.
-     * @param RNG Mersenne twister RNG.
+     * @param RNG Source of random numbers.
      */
-    public SoundManager(Context context, MersenneTwister RNG) {
+    public SoundManager(Context context, RandomSource RNG) {
+        this(context, RNG, DEFAULT_BACKEND);
+    }
+
+    /**
+     * Constructor.
+     * @param context Context within which to play the sounds.
+     * @param RNG Source of random numbers.
+     * @param backend One of the BACKEND_ constants.
+     */
+    public SoundManager(Context context, RandomSource RNG, int backend) {
         this.mContext = context;
         this.mRNG = RNG;
+        this.mBackend = createBackend(context, backend);
 
         // choose eight consonants to play.
         Set<Integer> set = new HashSet<Integer>();
@@ -75,63 +122,41 @@ public class SoundManager {
                 marker++;
             } // if (set.contains(current_consonant) != true)
         } // while (marker < NUM_CONSONANTS)
-    } // SoundManager(Context context, MersenneTwisterFast RNG)
-    
+    } // SoundManager(Context context, RandomSource RNG, int backend)
+
+    private SoundBackend createBackend(Context context, int backend) {
+        SoundBackend result;
+        switch (backend) {
+        case BACKEND_MEDIA_PLAYER:
+            result = new MediaPlayerBackend(context);
+            break;
+        case BACKEND_SOUND_POOL:
+            result = new SoundPoolBackend(context);
+            break;
+        case BACKEND_AUDIO_TRACK:
+            result = new AudioTrackBackend(context, mPcmCache);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown sound backend: " + backend);
+        }
+        result.setOnsetListener(new SoundBackend.OnsetListener() {
+            public void onOnset(long nanos) {
+                mPlayToOnset.record(mPlayNanos, nanos);
+                if (mPlayDrawnNanos != 0) {
+                    mDrawnToOnset.record(mPlayDrawnNanos, nanos);
+                }
+            }
+        });
+        return result;
+    }
+
     /**
      * Allocate all required resources.
      */
     public boolean initialize() {
-        Resources resources = mContext.getResources();
-        AssetFileDescriptor afd;
         boolean result = true;
         if (!resourcesAllocated) {
-            for (int i = NUM_CONSONANTS-1; i >= 0; i--) {
-
-                // ------------------------------------------------------------------------------
-                // don't try to create() all eight consonants now. this'll mean we try
-                // to prepare() all eight, which in 1.5 will cause us to exhaust
-                // MAX_OPENCORE_INSTANCES = 25 if we accidentally attempt to allocate
-                // three SoundManagers (happened in an older version), or even worse
-                // in 1.6+ cause us to fail the prepare() call after four or five
-                // consonants.
-                //
-                // bottom line is that we're expected to have a minimal number of
-                // MediaPlayer instances prepared at any given time.
-                // ------------------------------------------------------------------------------
-                mConsonantMediaPlayers[i] = new MediaPlayer();
-                mConsonantMediaPlayers[i].reset();
-                try {
-                    afd = resources.openRawResourceFd(mConsonantsInUse[i]);
-                    mConsonantMediaPlayers[i].setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-                    afd.close();
-                } catch (IllegalArgumentException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                } catch (IllegalStateException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                } catch (NotFoundException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
-                //mConsonantMediaPlayers[i] = MediaPlayer.create(mContext, mConsonantsInUse[i]);
-                /*
-                if (mConsonantMediaPlayers[i] == null) {
-                    result = false;
-                    break;
-                } else {
-                    mConsonantMediaPlayers[i].setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-                        public void onCompletion(MediaPlayer mp) {
-                            mp.seekTo(0);
-                            isPlaying = false;
-                        }
-                    });
-                }
-                */
-            }
+            result = mBackend.load(mConsonantsInUse);
             resourcesAllocated = true;
         }
 
@@ -151,11 +176,7 @@ public class SoundManager {
     public void close() {
         stopPlaying();
         if (resourcesAllocated) {
-            for (int i = NUM_CONSONANTS-1; i >= 0; i--) {
-                if (mConsonantMediaPlayers[i] != null) {
-                    mConsonantMediaPlayers[i].release();
-                }
-            }
+            mBackend.release();
             resourcesAllocated = false;
         }
     }
@@ -165,18 +186,7 @@ public class SoundManager {
      */
     public void stopPlaying() {
         if (isPlaying == true) {
-            mConsonantMediaPlayers[currentSound].stop();
-            /*
-            try {
-                mConsonantMediaPlayers[currentSound].prepare();
-            } catch (IllegalStateException e) {
-                // TODO Auto-generated catch block
-                Log.e("SoundManager::stopPlaying()", "IllegalStateException in prepare().", e);
-            } catch (IOException e) {
-                // TODO Auto-generated catch block
-                Log.e("SoundManager::stopPlaying()", "IOException in prepare().", e);
-            }
-            */
+            mBackend.stop();
         }
         isPlaying = false;
     }
@@ -186,16 +196,22 @@ public class SoundManager {
      */
     public void playRandomConsonant() {
         if (mRNG != null) {
-            playSound(mRNG.nextInt(NUM_CONSONANTS));
+            playSound(mRNG.nextInt(mConsonantsInUse.length));
         }
     }
 
     /**
      * Play a sound
-     * @param index Index into the consonants array.  Must be < 8.
+     * @param index Index into the consonants array.  Must be < getNumConsonants().
      */
     public void playSound(int index) {
-        if ((resourcesAllocated == false) || (mConsonantMediaPlayers[index] == null)) {
+        mPlayNanos = System.nanoTime();
+        mPlayDrawnNanos = mDrawnNanos;
+        mDrawnNanos = 0;
+        if (mPlayDrawnNanos != 0) {
+            mDrawnToPlay.record(mPlayDrawnNanos, mPlayNanos);
+        }
+        if (resourcesAllocated == false) {
             boolean result = initialize();
             if (!result) {
                 resourcesAllocated = true;
@@ -205,22 +221,51 @@ public class SoundManager {
             }
         }
 
-        try {
-            mConsonantMediaPlayers[index].prepare();
-        } catch (IllegalStateException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        mConsonantMediaPlayers[index].seekTo(0);
-        mConsonantMediaPlayers[index].start();
-        //mConsonantMediaPlayers[index].start();
+        mBackend.play(index);
         currentSound = index;
         isPlaying = true;
     }
 
+    /**
+     * @return Bytes of decoded PCM held for this session.  Zero unless the
+     * AudioTrack backend is in use.
+     */
+    public int getPcmCacheFootprint() {
+        return mPcmCache.getFootprintBytes();
+    }
+
+    /**
+     * Mark when the visual stimulus that the next playSound() accompanies
+     * was drawn, so audio latency can be measured against it.
+     * @param nanos System.nanoTime() when drawing finished.
+     */
+    public void markStimulusDrawn(long nanos) {
+        mDrawnNanos = nanos;
+    }
+
+    /**
+     * @return One line per latency histogram for this session.
+     */
+    public String getLatencyReport() {
+        return mDrawnToPlay + "\n" + mPlayToOnset + "\n" + mDrawnToOnset;
+    }
+
+    /**
+     * Look-ahead hint: the consonant that the next trial will play.  Lets
+     * backends that need per-play preparation do it during the
+     * interstimulus interval rather than in playSound().
+     * @param index Index into the consonants array.
+     */
+    public void prefetchSound(int index) {
+        if (resourcesAllocated) {
+            mBackend.prefetch(index);
+        }
+    }
+
+    public int getNumConsonants() {
+        return mConsonantsInUse.length;
+    }
+
     public boolean isresourcesAllocated() {
         return resourcesAllocated;
     }
@@ -0,0 +1,81 @@
+/**
+ * Play consonants from a SoundPool.
+ */
+package com.gyrovague.dualnback;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+
+/**
+ * Decodes every consonant once in load() and keeps the samples inside a
+ * single SoundPool, so play() is one non-blocking native call.
+ *
+ * Note that SoundPool.load() decodes asynchronously and this API level has
+ * no completion callback.  load() is called while the user is reading the
+ * new session alert, which is far longer than decoding eight short clips.
+ *
+ * @author asimihsan
+ *
+ */
+class SoundPoolBackend implements SoundBackend {
+    /**
+     * One stream for the current consonant, one so that a new consonant
+     * never has to wait for the previous stream to be stolen.
+     */
+    private static final int MAX_STREAMS = 2;
+    private static final int PRIORITY = 1;
+    private static final float VOLUME = 1.0f;
+    private static final float RATE = 1.0f;
+
+    private final Context mContext;
+    private SoundPool mSoundPool;
+    private int[] mSoundIds;
+    private int mStreamId;
+
+    SoundPoolBackend(Context context) {
+        this.mContext = context;
+    }
+
+    public boolean load(int[] consonants) {
+        mSoundPool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+        mSoundIds = new int[consonants.length];
+        for (int i = 0; i < consonants.length; i++) {
+            mSoundIds[i] = mSoundPool.load(mContext, consonants[i], PRIORITY);
+            if (mSoundIds[i] == 0) {
+                release();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void setOnsetListener(OnsetListener listener) {
+        // no way to tell when playback really starts.
+    }
+
+    public void play(int index) {
+        mStreamId = mSoundPool.play(mSoundIds[index], VOLUME, VOLUME, PRIORITY, 0, RATE);
+    }
+
+    public void prefetch(int index) {
+        // every consonant is already resident.
+    }
+
+    public void stop() {
+        if (mStreamId != 0) {
+            mSoundPool.stop(mStreamId);
+            mStreamId = 0;
+        }
+    }
+
+    public void release() {
+        if (mSoundPool != null) {
+            mSoundPool.release();
+            mSoundPool = null;
+        }
+        mSoundIds = null;
+        mStreamId = 0;
+    }
+
+}
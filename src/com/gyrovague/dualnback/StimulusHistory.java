@@ -0,0 +1,118 @@
+/**
+ * Packed history of the stimuli in a block.
+ */
+package com.gyrovague.dualnback;
+
+/**
+ * Each trial's visual square and audio consonant, both 0..7, packed into
+ * one byte as (visual << 3) | audio.  Storage is a ring of power-of-two
+ * capacity indexed by trial & mask, so lookups neither box nor bounds-check
+ * against a list, and the same instance is refilled every block.  A trial
+ * stays readable until capacity newer trials have been added.
+ *
+ * @author asimihsan
+ *
+ */
+public final class StimulusHistory {
+    public static final int MAX_STIMULUS = 7;
+    private static final int AUDIO_BITS = 3;
+    private static final int AUDIO_MASK = (1 << AUDIO_BITS) - 1;
+    private static final int VISUAL_MASK = MAX_STIMULUS << AUDIO_BITS;
+
+    private byte[] mStimuli;
+    private int mMask;
+    private int mSize;
+
+    /**
+     * @param capacity Rounded up to a power of two.
+     */
+    public StimulusHistory(int capacity) {
+        allocate(capacity);
+    }
+
+    /**
+     * Forget every trial, keeping the storage.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Make room for at least capacity trials.  Forgets every trial if the
+     * storage has to grow.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > mStimuli.length) {
+            allocate(capacity);
+        }
+    }
+
+    public void add(int visual, int audio) {
+        mStimuli[mSize & mMask] = (byte) ((visual << AUDIO_BITS) | audio);
+        mSize++;
+    }
+
+    /**
+     * Replace this history with a copy of another, reusing the storage
+     * when it is big enough.
+     */
+    public void copyFrom(StimulusHistory other) {
+        if (other.mSize > other.mStimuli.length) {
+            // the other ring has wrapped, so its layout depends on its capacity.
+            if (other.mStimuli.length != mStimuli.length) {
+                allocate(other.mStimuli.length);
+            }
+            System.arraycopy(other.mStimuli, 0, mStimuli, 0, mStimuli.length);
+        } else {
+            ensureCapacity(other.mSize);
+            System.arraycopy(other.mStimuli, 0, mStimuli, 0, other.mSize);
+        }
+        mSize = other.mSize;
+    }
+
+    public int getVisual(int trial) {
+        return (mStimuli[trial & mMask] >> AUDIO_BITS) & MAX_STIMULUS;
+    }
+
+    public int getAudio(int trial) {
+        return mStimuli[trial & mMask] & AUDIO_MASK;
+    }
+
+    /**
+     * @return Guess bits for the modalities in which a trial repeats the
+     * trial nInterval before it.
+     */
+    public int getMatches(int trial, int nInterval) {
+        int delta = mStimuli[trial & mMask] ^ mStimuli[(trial - nInterval) & mMask];
+        int matches = Guess.NONE;
+        if ((delta & VISUAL_MASK) == 0) {
+            matches |= Guess.VISUAL;
+        }
+        if ((delta & AUDIO_MASK) == 0) {
+            matches |= Guess.AUDIO;
+        }
+        return matches;
+    }
+
+    /**
+     * @return Number of trials added since the last clear().
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public int getCapacity() {
+        return mStimuli.length;
+    }
+
+    private void allocate(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mStimuli = new byte[size];
+        mMask = size - 1;
+        mSize = 0;
+    }
+
+}
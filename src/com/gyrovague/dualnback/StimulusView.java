@@ -0,0 +1,35 @@
+/**
+ * What GameActivity needs from a view that shows the visual stimulus.
+ */
+package com.gyrovague.dualnback;
+
+import android.os.Handler;
+
+/**
+ * Implemented by DrawView, which redraws on the UI thread, and by
+ * SurfaceDrawView, which renders on its own thread.  After drawing a newly
+ * shown square, an implementation sends MSG_TYPE_DRAWING_DONE to the
+ * handler with System.nanoTime() split across arg1 (high) and arg2 (low).
+ *
+ * @author asimihsan
+ *
+ */
+public interface StimulusView {
+
+    public void setmHandlerUI(Handler handlerUI);
+
+    /**
+     * Show the square at an index into DrawView.mPossibleSquares.
+     */
+    public void setmSquaresDrawnFromIndex(int index);
+
+    public void disableAllSquares();
+
+    /**
+     * @return true if the view hides the square itself after
+     * GameActivity.STIMULUS_DURATION_MS, and reports the achieved duration
+     * with MSG_TYPE_STIMULUS_REPORT, so no MSG_TYPE_HALT_VISUAL is needed.
+     */
+    public boolean isStimulusSelfTimed();
+
+}
@@ -0,0 +1,262 @@
+package com.gyrovague.dualnback;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Handler;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.Display;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.WindowManager;
+
+/**
+ * A DrawView alternative that renders on its own thread into a SurfaceView.
+ *
+ * While a stimulus square is showing the render thread posts a frame per
+ * vsync (unlockCanvasAndPost() blocks on the display), counts them, and
+ * clears the square itself after mFrameBudget frames, i.e.
+ * GameActivity.STIMULUS_DURATION_MS rounded to whole frames.  The
+ * on-screen time is then independent of UI-thread load.  After the square
+ * is cleared the achieved duration is reported with
+ * MSG_TYPE_STIMULUS_REPORT: arg1 is microseconds between posting the first
+ * frame with the square and posting the first frame without it, arg2 is
+ * the number of frames the square was posted for.
+ *
+ * @author asimihsan
+ *
+ */
+public class SurfaceDrawView extends SurfaceView implements SurfaceHolder.Callback, StimulusView {
+    private static final String TAG = "SurfaceDrawView";
+    private static final float FALLBACK_REFRESH_RATE = 60.0f;
+
+    private GridPainter mPainter;
+    private int mFrameBudget;
+    private volatile Handler mHandlerUI;
+
+    // ---------------------------------------------------------------------------------------
+    //  Shared with the render thread, guarded by mLock.
+    // ---------------------------------------------------------------------------------------
+    private final Object mLock = new Object();
+    private int mSquaresDrawn = 0;
+    private boolean mStimulusPending = false;
+    private boolean mDirty = false;
+    private RenderThread mRenderThread;
+    // ---------------------------------------------------------------------------------------
+
+    public SurfaceDrawView(Context context) {
+        super(context);
+        commonConstructor(context);
+    }
+
+    public SurfaceDrawView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        commonConstructor(context);
+    }
+
+    private void commonConstructor(Context context) {
+        setFocusable(true);
+        mPainter = new GridPainter(context.getResources());
+        getHolder().addCallback(this);
+
+        Display display = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay();
+        float refresh_rate = display.getRefreshRate();
+        if (refresh_rate <= 0) {
+            refresh_rate = FALLBACK_REFRESH_RATE;
+        }
+        mFrameBudget = Math.max(1, Math.round(GameActivity.STIMULUS_DURATION_MS * refresh_rate / 1000));
+        Log.d(TAG, "refresh rate: " + refresh_rate + " Hz, frame budget: " + mFrameBudget);
+    }
+
+    public void setmHandlerUI(Handler mHandlerUI) {
+        this.mHandlerUI = mHandlerUI;
+    }
+
+    public void setmSquaresDrawnFromIndex(int index) {
+        synchronized (mLock) {
+            mSquaresDrawn = 1 << index;
+            mStimulusPending = true;
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    public void disableAllSquares() {
+        synchronized (mLock) {
+            mSquaresDrawn = 0;
+            mStimulusPending = false;
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Squares are hidden by the render thread after mFrameBudget frames.
+     */
+    public boolean isStimulusSelfTimed() {
+        return true;
+    }
+
+    /**
+     * @return Frames a stimulus square stays on screen.
+     */
+    public int getFrameBudget() {
+        return mFrameBudget;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    //  SurfaceHolder.Callback.  The render thread lives exactly as long as the surface.
+    // ---------------------------------------------------------------------------------------
+    public void surfaceCreated(SurfaceHolder holder) {
+        synchronized (mLock) {
+            // surfaceChanged() follows and rebuilds it anyway; this just does not rely on it.
+            mPainter.restore();
+            mDirty = true;
+            mRenderThread = new RenderThread(holder);
+            mRenderThread.start();
+        }
+    }
+
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (mLock) {
+            // the render thread only reads the painter under mLock.
+            mPainter.setSize(0, 0, width, height);
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        RenderThread thread;
+        synchronized (mLock) {
+            thread = mRenderThread;
+            mRenderThread = null;
+            if (thread != null) {
+                thread.mRunning = false;
+            }
+            mLock.notifyAll();
+        }
+        if (thread != null) {
+            // the surface is gone once we return, so the thread must be finished with it.
+            boolean retry = true;
+            while (retry) {
+                try {
+                    thread.join();
+                    retry = false;
+                } catch (InterruptedException e) {
+                    // try again.
+                }
+            }
+        }
+        synchronized (mLock) {
+            mPainter.recycle();
+        }
+    }
+    // ---------------------------------------------------------------------------------------
+
+    private class RenderThread extends Thread {
+        private final SurfaceHolder mHolder;
+
+        /**
+         * Guarded by mLock.
+         */
+        private boolean mRunning = true;
+
+        RenderThread(SurfaceHolder holder) {
+            super(TAG);
+            mHolder = holder;
+        }
+
+        @Override
+        public void run() {
+            final int budget = mFrameBudget;
+            boolean timing = false;
+            int frames = 0;
+            long first_nanos = 0;
+
+            while (true) {
+                int squares;
+                synchronized (mLock) {
+                    // while timing a stimulus, post every frame rather than wait.
+                    while (mRunning && !mDirty && !timing) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            // check mRunning again.
+                        }
+                    }
+                    if (!mRunning) {
+                        return;
+                    }
+                    if (mStimulusPending) {
+                        mStimulusPending = false;
+                        timing = true;
+                        frames = 0;
+                    }
+                    squares = mSquaresDrawn;
+                    mDirty = false;
+                }
+
+                if (timing && (squares == 0)) {
+                    // disableAllSquares() cut the stimulus short; nothing to report.
+                    timing = false;
+                }
+
+                long posted = drawFrame(squares);
+                if (!timing || (posted == 0)) {
+                    continue;
+                }
+
+                frames++;
+                if (frames == 1) {
+                    first_nanos = posted;
+                    Handler handler = mHandlerUI;
+                    if (handler != null) {
+                        handler.sendMessage(handler.obtainMessage(GameActivity.MSG_TYPE_DRAWING_DONE,
+                                                                  (int) (posted >>> 32), (int) posted));
+                    }
+                }
+
+                if (frames >= budget) {
+                    timing = false;
+                    synchronized (mLock) {
+                        if (mStimulusPending) {
+                            // a newer stimulus replaced this one; let it be drawn instead.
+                            continue;
+                        }
+                        mSquaresDrawn = 0;
+                    }
+                    long cleared = drawFrame(0);
+                    Handler handler = mHandlerUI;
+                    if ((cleared != 0) && (handler != null)) {
+                        handler.sendMessage(handler.obtainMessage(GameActivity.MSG_TYPE_STIMULUS_REPORT,
+                                                                  (int) ((cleared - first_nanos) / 1000), frames));
+                    }
+                }
+            } // while (true)
+        } // public void run()
+
+        /**
+         * Draw and post one frame.
+         * @return System.nanoTime() after posting, or 0 if the surface could
+         * not be locked.
+         */
+        private long drawFrame(int squares) {
+            Canvas canvas = mHolder.lockCanvas();
+            if (canvas == null) {
+                return 0;
+            }
+            try {
+                canvas.drawColor(Color.BLACK);
+                synchronized (mLock) {
+                    mPainter.draw(canvas, squares);
+                }
+            } finally {
+                mHolder.unlockCanvasAndPost(canvas);
+            }
+            return System.nanoTime();
+        }
+    } // private class RenderThread
+
+}
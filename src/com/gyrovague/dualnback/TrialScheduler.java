@@ -0,0 +1,122 @@
+/**
+ * Absolute-deadline timing of the trials in a block.
+ */
+package com.gyrovague.dualnback;
+
+import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
+
+/**
+ * Every deadline in a block is computed from the block's start time, so
+ * late message delivery on one trial does not push back the trials after
+ * it.  Trial k shows its stimulus at
+ *
+ *     start + LEAD_IN_MS + k * TRIAL_PERIOD_MS
+ *
+ * hides it STIMULUS_DURATION_MS later and validates the guess
+ * RESPONSE_WINDOW_MS later.  Deadlines are posted with sendMessageAtTime()
+ * as SystemClock.uptimeMillis() targets.
+ *
+ * Blocks are anchored separately, since the alert between blocks waits on
+ * the user for an unbounded time.
+ *
+ * Not thread-safe; use from the handler's thread.
+ *
+ * @author asimihsan
+ *
+ */
+final class TrialScheduler {
+    /**
+     * Gap between the end of one trial's response window and the next
+     * stimulus, and before the first stimulus of a block.
+     */
+    static final int LEAD_IN_MS             = 500;
+    static final int RESPONSE_WINDOW_MS     = 3000;
+    // intentionally the baseline 3.5 s, not 3 s, so saved levels keep their difficulty.
+    static final int TRIAL_PERIOD_MS        = LEAD_IN_MS + RESPONSE_WINDOW_MS;
+    private static final long NANOS_PER_MS  = 1000000L;
+
+    private final Handler mHandler;
+    private long mBlockStart;
+    private int mTrial;
+
+    /**
+     * How late each message arrived relative to its deadline.
+     */
+    private final LatencyHistogram mStimulusOnJitter = new LatencyHistogram("stimulus-on jitter");
+    private final LatencyHistogram mValidateJitter = new LatencyHistogram("validate jitter");
+
+    TrialScheduler(Handler handler) {
+        this.mHandler = handler;
+    }
+
+    /**
+     * Anchor a new block at the current time and schedule its first trial.
+     */
+    void startBlock() {
+        mBlockStart = SystemClock.uptimeMillis();
+        mTrial = 0;
+        postAt(GameActivity.MSG_TYPE_NEW_TRIAL, getStimulusOnTime(mTrial));
+    }
+
+    /**
+     * Schedule the stimulus-off and validate deadlines of the current trial.
+     * @param haltVisual false if the StimulusView hides the square itself.
+     */
+    void scheduleCurrentTrial(boolean haltVisual) {
+        long on = getStimulusOnTime(mTrial);
+        if (haltVisual) {
+            postAt(GameActivity.MSG_TYPE_HALT_VISUAL, on + GameActivity.STIMULUS_DURATION_MS);
+        }
+        postAt(GameActivity.MSG_TYPE_GUESS_VALIDATE, on + RESPONSE_WINDOW_MS);
+    }
+
+    /**
+     * Schedule the next trial's stimulus.  The block may turn out to be
+     * finished when it arrives; GameActivity decides that.
+     */
+    void scheduleNextTrial() {
+        mTrial++;
+        postAt(GameActivity.MSG_TYPE_NEW_TRIAL, getStimulusOnTime(mTrial));
+    }
+
+    /**
+     * Record how late a scheduled message was handled.
+     * @return Lateness in milliseconds.
+     */
+    long recordJitter(Message msg) {
+        long late = SystemClock.uptimeMillis() - msg.getWhen();
+        switch (msg.what) {
+        case GameActivity.MSG_TYPE_NEW_TRIAL:
+            mStimulusOnJitter.record(late * NANOS_PER_MS);
+            break;
+        case GameActivity.MSG_TYPE_GUESS_VALIDATE:
+            mValidateJitter.record(late * NANOS_PER_MS);
+            break;
+        default:
+            break;
+        }
+        return late;
+    }
+
+    long getStimulusOnTime(int trial) {
+        return mBlockStart + LEAD_IN_MS + (long) trial * TRIAL_PERIOD_MS;
+    }
+
+    int getCurrentTrial() {
+        return mTrial;
+    }
+
+    /**
+     * @return One line per jitter histogram.
+     */
+    String getJitterReport() {
+        return mStimulusOnJitter + "\n" + mValidateJitter;
+    }
+
+    private void postAt(int what, long uptimeMillis) {
+        mHandler.sendMessageAtTime(mHandler.obtainMessage(what), uptimeMillis);
+    }
+
+}
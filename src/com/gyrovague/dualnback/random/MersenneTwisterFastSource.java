@@ -0,0 +1,55 @@
+/**
+ * RandomSource over ec.util.MersenneTwisterFast.
+ */
+package com.gyrovague.dualnback.random;
+
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Adapts the unsynchronized MersenneTwisterFast.  Use from one thread at a
+ * time, e.g. one source per generated block or per manager, handed over
+ * through an executor or handler.
+ *
+ * @author asimihsan
+ *
+ */
+public final class MersenneTwisterFastSource implements RandomSource {
+    private final MersenneTwisterFast mRNG;
+
+    public MersenneTwisterFastSource(MersenneTwisterFast rng) {
+        this.mRNG = rng;
+    }
+
+    public MersenneTwisterFastSource(long seed) {
+        this(new MersenneTwisterFast(seed));
+    }
+
+    public MersenneTwisterFastSource(int[] seed) {
+        this(new MersenneTwisterFast(seed));
+    }
+
+    public int nextInt(int n) {
+        return mRNG.nextInt(n);
+    }
+
+    public void fillInts(int[] values, int offset, int length, int n) {
+        mRNG.fillInts(values, offset, length, n);
+    }
+
+    public int nextIntExcept(int n, int except) {
+        return mRNG.nextIntExcept(n, except);
+    }
+
+    public long nextLong() {
+        return mRNG.nextLong();
+    }
+
+    public double nextDouble() {
+        return mRNG.nextDouble();
+    }
+
+    public MersenneTwisterFast getGenerator() {
+        return mRNG;
+    }
+
+}
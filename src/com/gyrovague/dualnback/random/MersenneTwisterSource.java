@@ -0,0 +1,86 @@
+/**
+ * RandomSource over ec.util.MersenneTwister.
+ */
+package com.gyrovague.dualnback.random;
+
+import ec.util.MersenneTwister;
+
+/**
+ * Adapts the synchronized MersenneTwister, for a source shared between
+ * threads.  Every draw takes the generator's monitor; single-threaded code
+ * should use MersenneTwisterFastSource, which gives the same sequence for
+ * the same seed.  MersenneTwister has no bulk methods, so fillInts() and
+ * nextIntExcept() repeat MersenneTwisterFast's multiply-shift draw one
+ * word at a time, to keep the sequences the same.
+ *
+ * @author asimihsan
+ *
+ */
+public final class MersenneTwisterSource implements RandomSource {
+    private final MersenneTwister mRNG;
+
+    public MersenneTwisterSource(MersenneTwister rng) {
+        this.mRNG = rng;
+    }
+
+    public MersenneTwisterSource(long seed) {
+        this(new MersenneTwister(seed));
+    }
+
+    public MersenneTwisterSource(int[] seed) {
+        this(new MersenneTwister(seed));
+    }
+
+    public int nextInt(int n) {
+        return mRNG.nextInt(n);
+    }
+
+    public void fillInts(int[] values, int offset, int length, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be > 0");
+        }
+        for (int i = offset; i < offset + length; i++) {
+            values[i] = nextBounded(n);
+        }
+    }
+
+    public int nextIntExcept(int n, int except) {
+        if (n <= 1) {
+            throw new IllegalArgumentException("n must be > 1");
+        }
+        if ((except < 0) || (except >= n)) {
+            throw new IllegalArgumentException("except must be in [0, n)");
+        }
+        int result = nextBounded(n - 1);
+        if (result >= except) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Lemire's multiply-shift: the high word of a 32-bit draw times n,
+     * rejecting the 2^32 mod n low words that would bias it.
+     */
+    private int nextBounded(int n) {
+        long threshold = 0x100000000L % n;
+        long product;
+        do {
+            product = (mRNG.nextInt() & 0xFFFFFFFFL) * n;
+        } while ((product & 0xFFFFFFFFL) < threshold);
+        return (int) (product >>> 32);
+    }
+
+    public long nextLong() {
+        return mRNG.nextLong();
+    }
+
+    public double nextDouble() {
+        return mRNG.nextDouble();
+    }
+
+    public MersenneTwister getGenerator() {
+        return mRNG;
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Where the game's random numbers come from.
+ */
+package com.gyrovague.dualnback.random;
+
+/**
+ * The few draws the game needs, so that GameManager, BlockGenerator and
+ * SoundManager do not depend on one generator.  Implementations need not
+ * be thread-safe; give each thread its own source.
+ *
+ * @author asimihsan
+ *
+ */
+public interface RandomSource {
+    /**
+     * @return Uniform in [0, n).
+     * @throws IllegalArgumentException if n is not positive.
+     */
+    int nextInt(int n);
+
+    /**
+     * Fill values[offset, offset + length) with values uniform in [0, n),
+     * more cheaply than a nextInt(n) loop.  Not the values nextInt(n)
+     * would give.
+     * @throws IllegalArgumentException if n is not positive.
+     */
+    void fillInts(int[] values, int offset, int length, int n);
+
+    /**
+     * @return Uniform in [0, n) other than except, drawn as fillInts draws.
+     * @throws IllegalArgumentException unless n > 1 and except is in [0, n).
+     */
+    int nextIntExcept(int n, int except);
+
+    /**
+     * @return Uniform over all long values.
+     */
+    long nextLong();
+
+    /**
+     * @return Uniform in [0.0, 1.0).
+     */
+    double nextDouble();
+}
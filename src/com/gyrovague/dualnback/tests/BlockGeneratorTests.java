@@ -0,0 +1,161 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+
+import com.gyrovague.dualnback.BlockGenerator;
+import com.gyrovague.dualnback.GameConfig;
+import com.gyrovague.dualnback.Guess;
+import com.gyrovague.dualnback.StimulusHistory;
+
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+
+/**
+ * @author asimihsan
+ *
+ */
+@SmallTest
+public class BlockGeneratorTests extends AndroidTestCase {
+    private static final String TAG = "BlockGeneratorTests";
+    private static final int BLOCK_SIZE = GameConfig.DEFAULT.getBlockSize();
+    private static final int[] RESEARCH_BLOCK_SIZES = new int[] {1000, 100000};
+    private static final int RESEARCH_N = 3;
+    private static final int SEEDS = 200;
+    private static final int MAX_N = 9;
+
+    private BlockGenerator mGenerator;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mGenerator = new BlockGenerator(GameConfig.DEFAULT, 8, 8);
+    }
+
+    public void testExactTargetCounts() {
+        StimulusHistory history = new StimulusHistory(BLOCK_SIZE + 2);
+        for (int n = 1; n <= MAX_N; n++) {
+            for (int seed = 0; seed < SEEDS; seed++) {
+                mGenerator.generate(new MersenneTwisterFastSource(seed), n, history);
+                assertEquals(BLOCK_SIZE + n, history.size());
+                assertTargetCounts("N = " + n + ", seed = " + seed, GameConfig.DEFAULT, history, n);
+            }
+        }
+    } // public void testExactTargetCounts()
+
+    /**
+     * Lure-avoiding blocks keep exact target counts and have no lures,
+     * including the draws with a single value to avoid, which go through
+     * RandomSource.nextIntExcept().
+     */
+    public void testAvoidsLures() {
+        BlockGenerator generator = new BlockGenerator(GameConfig.DEFAULT, 8, 8, true);
+        StimulusHistory history = new StimulusHistory(BLOCK_SIZE + 2);
+        for (int n = 1; n <= MAX_N; n++) {
+            for (int seed = 0; seed < SEEDS; seed++) {
+                generator.generate(new MersenneTwisterFastSource(seed), n, history);
+                assertEquals(BLOCK_SIZE + n, history.size());
+                assertTargetCounts("N = " + n + ", seed = " + seed, GameConfig.DEFAULT, history, n);
+                assertFalse("N = " + n + ", seed = " + seed, BlockGenerator.hasLures(history, n));
+            }
+        }
+    } // public void testAvoidsLures()
+
+    /**
+     * Research-length blocks with a non-default target mix.  Logs the cost
+     * per trial at each size, which should stay flat if generation is linear.
+     */
+    @LargeTest
+    public void testResearchBlockSizes() {
+        for (int block_size : RESEARCH_BLOCK_SIZES) {
+            GameConfig config = GameConfig.fromRatios(block_size, 0.25, 0.2, 0.05, 1);
+            BlockGenerator generator = new BlockGenerator(config, 8, 8);
+            StimulusHistory history = new StimulusHistory(block_size + RESEARCH_N);
+
+            // warm up, then time.
+            generator.generate(new MersenneTwisterFastSource(1), RESEARCH_N, history);
+            long start = System.nanoTime();
+            generator.generate(new MersenneTwisterFastSource(2), RESEARCH_N, history);
+            long nanos = System.nanoTime() - start;
+
+            Log.i(TAG, block_size + " trials: " + (nanos / 1000000.0) + " ms, " + (1.0 * nanos / block_size) + " ns/trial");
+            assertEquals(block_size + RESEARCH_N, history.size());
+            assertTargetCounts(config.toString(), config, history, RESEARCH_N);
+        }
+    } // public void testResearchBlockSizes()
+
+    public void testConfigValidation() {
+        try {
+            new GameConfig(20, 6, 6, 7, 20);
+            fail("both targets exceeding single-modality targets must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+        try {
+            new GameConfig(10, 8, 8, 2, 20);
+            fail("targets that do not fit in the block must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+        try {
+            GameConfig.fromRatios(100, 1.5, 0.1, 0.0, 1);
+            fail("ratio above 1 must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    /**
+     * Anything that changes which block a seed gives changes the identity
+     * a DayPlan records.
+     */
+    public void testIdentity() {
+        assertEquals(mGenerator.getIdentity(), new BlockGenerator(GameConfig.DEFAULT, 8, 8).getIdentity());
+        long[] others = new long[] {
+            new BlockGenerator(GameConfig.DEFAULT, 8, 8, true).getIdentity(),
+            new BlockGenerator(GameConfig.DEFAULT, 7, 8).getIdentity(),
+            new BlockGenerator(GameConfig.DEFAULT, 8, 7).getIdentity(),
+            new BlockGenerator(new GameConfig(20, 6, 6, 1, 20), 8, 8).getIdentity(),
+            new BlockGenerator(new GameConfig(30, 6, 6, 2, 20), 8, 8).getIdentity(),
+        };
+        for (int i = 0; i < others.length; i++) {
+            assertFalse("generator " + i, others[i] == mGenerator.getIdentity());
+        }
+    }
+
+    private static void assertTargetCounts(String where, GameConfig config, StimulusHistory history, int n) {
+        int visual = 0;
+        int audio = 0;
+        int both = 0;
+        for (int trial = n; trial < history.size(); trial++) {
+            int matches = history.getMatches(trial, n);
+            if ((matches & Guess.VISUAL) != 0) {
+                visual++;
+            }
+            if ((matches & Guess.AUDIO) != 0) {
+                audio++;
+            }
+            if (matches == Guess.BOTH) {
+                both++;
+            }
+        }
+        assertEquals(where, config.getVisualTargets(), visual);
+        assertEquals(where, config.getAudioTargets(), audio);
+        assertEquals(where, config.getBothTargets(), both);
+    }
+
+    public void testSameSeedSameBlock() {
+        StimulusHistory first = new StimulusHistory(BLOCK_SIZE + 3);
+        StimulusHistory second = new StimulusHistory(BLOCK_SIZE + 3);
+        mGenerator.generate(new MersenneTwisterFastSource(1234), 3, first);
+        mGenerator.generate(new MersenneTwisterFastSource(1234), 3, second);
+        for (int trial = 0; trial < first.size(); trial++) {
+            assertEquals(first.getVisual(trial), second.getVisual(trial));
+            assertEquals(first.getAudio(trial), second.getAudio(trial));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.gyrovague.dualnback.BlockGenerator;
+import com.gyrovague.dualnback.BlockLibrary;
+import com.gyrovague.dualnback.BlockLibraryFormat;
+import com.gyrovague.dualnback.DayPlan;
+import com.gyrovague.dualnback.GameConfig;
+import com.gyrovague.dualnback.GameManager;
+import com.gyrovague.dualnback.StimulusHistory;
+
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+
+/**
+ * Builds a small library in memory through BlockLibraryFormat, the code
+ * BlockLibraryBuilder writes the asset with, and checks that reading it
+ * back gives exactly the packed blocks.
+ *
+ * @author asimihsan
+ *
+ */
+@SmallTest
+public class BlockLibraryTests extends AndroidTestCase {
+    private static final GameConfig CONFIG = GameConfig.DEFAULT;
+    private static final int NUM_SQUARES = 8;
+    private static final int NUM_CONSONANTS = 8;
+    private static final int[] NS = new int[] {2, 3};
+    private static final int BLOCKS = 4;
+
+    /**
+     * Packed blocks, indexed by position in NS then index in the pool.
+     */
+    private StimulusHistory[][] mBlocks;
+    private ByteBuffer mBytes;
+    private BlockLibrary mLibrary;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        BlockGenerator generator = new BlockGenerator(CONFIG, NUM_SQUARES, NUM_CONSONANTS, true);
+        mBlocks = new StimulusHistory[NS.length][BLOCKS];
+        for (int i = 0; i < NS.length; i++) {
+            for (int block = 0; block < BLOCKS; block++) {
+                mBlocks[i][block] = new StimulusHistory(generator.getBlockLength(NS[i]));
+                generator.generate(new MersenneTwisterFastSource(100 * NS[i] + block), NS[i], mBlocks[i][block]);
+            }
+        }
+        mBytes = pack(mBlocks);
+        mLibrary = BlockLibrary.wrap(mBytes);
+    }
+
+    /**
+     * The top two bits of the seed pick one of four blocks; the rest must
+     * not matter.
+     */
+    public void testFillReturnsPackedBlocks() {
+        StimulusHistory history = new StimulusHistory(0);
+        for (int i = 0; i < NS.length; i++) {
+            for (int block = 0; block < BLOCKS; block++) {
+                long seed = ((long) block) << 62;
+                mLibrary.fill(NS[i], seed, history);
+                assertSameBlock("N = " + NS[i] + ", block " + block, mBlocks[i][block], history);
+                mLibrary.fill(NS[i], seed | 0x3FFFFFFFFFFFFFFFL, history);
+                assertSameBlock("N = " + NS[i] + ", block " + block + ", low bits set", mBlocks[i][block], history);
+            }
+        }
+    }
+
+    /**
+     * Every block read back passes the builder's validation: exact target
+     * counts and no lures.
+     */
+    public void testBlocksValid() {
+        StimulusHistory history = new StimulusHistory(0);
+        for (int i = 0; i < NS.length; i++) {
+            for (int block = 0; block < BLOCKS; block++) {
+                mLibrary.fill(NS[i], ((long) block) << 62, history);
+                assertTrue("N = " + NS[i] + ", block " + block, BlockLibraryFormat.isValid(CONFIG, history, NS[i]));
+                assertFalse("N = " + NS[i] + ", block " + block, BlockGenerator.hasLures(history, NS[i]));
+            }
+        }
+    }
+
+    /**
+     * The builder's validation rejects short blocks and, among blocks
+     * generated without lure avoidance, the ones with lures.
+     */
+    public void testValidationRejects() {
+        StimulusHistory history = new StimulusHistory(0);
+        mLibrary.fill(2, 0, history);
+        assertFalse(BlockLibraryFormat.isValid(CONFIG, history, 3));
+
+        BlockGenerator generator = new BlockGenerator(CONFIG, NUM_SQUARES, NUM_CONSONANTS);
+        int rejected = 0;
+        for (int seed = 0; seed < 20; seed++) {
+            generator.generate(new MersenneTwisterFastSource(seed), 2, history);
+            if (BlockGenerator.hasLures(history, 2)) {
+                assertFalse("seed " + seed, BlockLibraryFormat.isValid(CONFIG, history, 2));
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 0);
+    }
+
+    public void testCovers() {
+        for (int n : NS) {
+            assertTrue("N = " + n, mLibrary.covers(CONFIG, NUM_SQUARES, NUM_CONSONANTS, n));
+        }
+        assertFalse(mLibrary.covers(CONFIG, NUM_SQUARES, NUM_CONSONANTS, 1));
+        assertFalse(mLibrary.covers(CONFIG, NUM_SQUARES, NUM_CONSONANTS, 4));
+        assertFalse(mLibrary.covers(CONFIG, NUM_SQUARES, NUM_CONSONANTS, -1));
+        assertFalse(mLibrary.covers(CONFIG, NUM_SQUARES + 1, NUM_CONSONANTS, 2));
+        assertFalse(mLibrary.covers(CONFIG, NUM_SQUARES, NUM_CONSONANTS - 1, 2));
+        assertFalse(mLibrary.covers(new GameConfig(30, 6, 6, 2, 20), NUM_SQUARES, NUM_CONSONANTS, 2));
+        assertFalse(mLibrary.covers(new GameConfig(20, 5, 6, 2, 20), NUM_SQUARES, NUM_CONSONANTS, 2));
+    }
+
+    public void testIdentity() throws IOException {
+        assertEquals(mLibrary.getIdentity(), BlockLibrary.wrap(pack(mBlocks)).getIdentity());
+        ByteBuffer changed = pack(mBlocks);
+        int last = changed.capacity() - 1;
+        changed.put(last, (byte) (changed.get(last) ^ 1));
+        assertFalse(mLibrary.getIdentity() == BlockLibrary.wrap(changed).getIdentity());
+    }
+
+    public void testRejectsOtherVersions() throws IOException {
+        ByteBuffer bytes = pack(mBlocks);
+        bytes.putInt(4, BlockLibraryFormat.VERSION + 1);
+        try {
+            BlockLibrary.wrap(bytes);
+            fail("read a library of another version");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Blocks a GameManager takes from the library are recorded as such, and
+     * regenerate only with the same library.
+     */
+    public void testRegenerateFromLibrary() {
+        GameManager played = new GameManager(new MersenneTwisterFastSource(1));
+        played.setBlockLibrary(mLibrary);
+        played.prepareCurrentBlock();
+        DayPlan plan = played.getDayPlan();
+        assertEquals(DayPlan.SOURCE_LIBRARY, plan.getSource(0));
+        assertEquals(mLibrary.getIdentity(), plan.getSourceId(0));
+
+        StimulusHistory expected = new StimulusHistory(0);
+        mLibrary.fill(plan.getNInterval(0), plan.getBlockSeed(0), expected);
+        GameManager audit = new GameManager(new MersenneTwisterFastSource(2));
+        audit.setBlockLibrary(mLibrary);
+        audit.setDayPlan(plan);
+        assertSameBlock("regenerated", expected, audit.regenerateBlock(0));
+
+        audit.setBlockLibrary(null);
+        try {
+            audit.regenerateBlock(0);
+            fail("regenerated a library block without the library");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Packs and writes through BlockLibraryFormat, as BlockLibraryBuilder
+     * does, with one pool per N in NS.
+     */
+    private static ByteBuffer pack(StimulusHistory[][] blocks) throws IOException {
+        byte[][] pools = new byte[NS.length][];
+        for (int i = 0; i < NS.length; i++) {
+            int stride = BlockLibraryFormat.getStride(CONFIG.getBlockSize() + NS[i]);
+            pools[i] = new byte[blocks[i].length * stride];
+            for (int block = 0; block < blocks[i].length; block++) {
+                BlockLibraryFormat.pack(blocks[i][block], pools[i], block * stride);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockLibraryFormat.write(new DataOutputStream(bytes), CONFIG, NUM_SQUARES, NUM_CONSONANTS, NS, pools);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void assertSameBlock(String where, StimulusHistory expected, StimulusHistory actual) {
+        assertEquals(where, expected.size(), actual.size());
+        for (int trial = 0; trial < expected.size(); trial++) {
+            assertEquals(where + ", trial " + trial, expected.getVisual(trial), actual.getVisual(trial));
+            assertEquals(where + ", trial " + trial, expected.getAudio(trial), actual.getAudio(trial));
+        }
+    }
+
+}
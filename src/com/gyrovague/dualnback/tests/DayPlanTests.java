@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.gyrovague.dualnback.DayPlan;
+import com.gyrovague.dualnback.GameManager;
+import com.gyrovague.dualnback.StimulusHistory;
+import com.gyrovague.dualnback.Trial;
+
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+
+/**
+ * @author asimihsan
+ *
+ */
+@SmallTest
+public class DayPlanTests extends AndroidTestCase {
+    private static final long DAY_SEED = 0x0123456789ABCDEFL;
+    private static final int BLOCKS = 3;
+
+    public void testRoundTrip() throws IOException {
+        DayPlan plan = new DayPlan(DAY_SEED);
+        plan.recordBlock(0, 2, DayPlan.SOURCE_GENERATOR, 0x1111L);
+        plan.recordBlock(1, 3, DayPlan.SOURCE_LIBRARY, -1L);
+        DayPlan read = roundTrip(plan);
+        assertEquals(DAY_SEED, read.getDaySeed());
+        assertEquals(2, read.getBlockCount());
+        for (int block = 0; block < 2; block++) {
+            assertEquals(plan.getBlockSeed(block), read.getBlockSeed(block));
+            assertEquals(plan.getNInterval(block), read.getNInterval(block));
+            assertEquals(plan.getSource(block), read.getSource(block));
+            assertEquals(plan.getSourceId(block), read.getSourceId(block));
+        }
+    }
+
+    /**
+     * Each distinct source is written once, however many blocks use it.
+     */
+    public void testSourcesWrittenOnce() throws IOException {
+        DayPlan plan = new DayPlan(DAY_SEED);
+        for (int block = 0; block < 20; block++) {
+            plan.recordBlock(block, 2 + block % 3, DayPlan.SOURCE_GENERATOR, 0x1111L);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        plan.writeTo(new DataOutputStream(bytes));
+        assertEquals(1 + 8 + 1 + 9 + 2 + 20 * 2, bytes.size());
+
+        plan.recordBlock(20, 2, DayPlan.SOURCE_LIBRARY, 0x2222L);
+        DayPlan read = roundTrip(plan);
+        assertEquals(21, read.getBlockCount());
+        assertEquals(DayPlan.SOURCE_GENERATOR, read.getSource(19));
+        assertEquals(0x1111L, read.getSourceId(19));
+        assertEquals(DayPlan.SOURCE_LIBRARY, read.getSource(20));
+        assertEquals(0x2222L, read.getSourceId(20));
+    }
+
+    /**
+     * Version 1 plans recorded only N, so can't say which source to
+     * regenerate from.
+     */
+    public void testRejectsVersion1() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(1);
+            out.writeLong(DAY_SEED);
+            out.writeShort(1);
+            out.writeByte(2);
+            DayPlan.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("read a version 1 day plan");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Play a few blocks, save the plan, and regenerate each block from the
+     * saved plan in a fresh GameManager.
+     */
+    @MediumTest
+    public void testRegenerateMatchesPlayedBlocks() throws IOException {
+        GameManager played = new GameManager(new MersenneTwisterFastSource(DAY_SEED));
+        ArrayList<int[]> trials = new ArrayList<int[]>();
+        played.prepareCurrentBlock();
+        for (int block = 0; block < BLOCKS; block++) {
+            ArrayList<Integer> stimuli = new ArrayList<Integer>();
+            while (!played.isCurrentBlockFinished()) {
+                Trial trial = played.getCurrentTrial();
+                stimuli.add(trial.visual);
+                stimuli.add(trial.audio);
+                played.evaluateGuess();
+            }
+            int[] block_trials = new int[stimuli.size()];
+            for (int i = 0; i < block_trials.length; i++) {
+                block_trials[i] = stimuli.get(i);
+            }
+            trials.add(block_trials);
+            played.advanceBlock();
+        }
+
+        GameManager audit = new GameManager(new MersenneTwisterFastSource(~DAY_SEED));
+        audit.setDayPlan(roundTrip(played.getDayPlan()));
+        for (int block = 0; block < BLOCKS; block++) {
+            StimulusHistory history = audit.regenerateBlock(block);
+            int[] block_trials = trials.get(block);
+            assertEquals("block " + block, block_trials.length / 2, history.size());
+            for (int trial = 0; trial < history.size(); trial++) {
+                assertEquals("block " + block + ", trial " + trial,
+                             block_trials[2 * trial], history.getVisual(trial));
+                assertEquals("block " + block + ", trial " + trial,
+                             block_trials[2 * trial + 1], history.getAudio(trial));
+            }
+        }
+    } // public void testRegenerateMatchesPlayedBlocks()
+
+    public void testRefusesUnknownLibrary() {
+        DayPlan plan = new DayPlan(DAY_SEED);
+        plan.recordBlock(0, 2, DayPlan.SOURCE_LIBRARY, 42L);
+        GameManager manager = new GameManager(new MersenneTwisterFastSource(DAY_SEED));
+        manager.setDayPlan(plan);
+        try {
+            manager.regenerateBlock(0);
+            fail("regenerated a block from a library that is not loaded");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testRefusesOtherGenerator() {
+        DayPlan plan = new DayPlan(DAY_SEED);
+        plan.recordBlock(0, 2, DayPlan.SOURCE_GENERATOR, 42L);
+        GameManager manager = new GameManager(new MersenneTwisterFastSource(DAY_SEED));
+        manager.setDayPlan(plan);
+        try {
+            manager.regenerateBlock(0);
+            fail("regenerated a block from a different generator");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static DayPlan roundTrip(DayPlan plan) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        plan.writeTo(new DataOutputStream(bytes));
+        return DayPlan.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.gyrovague.dualnback.DrawView;
+import com.gyrovague.dualnback.GameActivity;
+
+/**
+ * @author asimihsan
+ *
+ */
+@SmallTest
+public class DrawViewTests extends AndroidTestCase {
+    private static final int SIZE = 320;
+    private static final int FRAMES = 100;
+
+    private DrawView mDrawView;
+    private Canvas mCanvas;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDrawView = new DrawView(getContext());
+
+        // triggers onSizeChanged(), which sets up the drawing coordinates.
+        mDrawView.layout(0, 0, SIZE, SIZE);
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    } // protected void setUp() throws Exception
+
+    public void testDrawDoesNotAllocate() {
+        assertEquals("allocations during " + FRAMES + " frames", 0, countAllocations(null));
+    }
+
+    /**
+     * Every real frame also sends MSG_TYPE_DRAWING_DONE.  The handler's
+     * looper never runs; instead each frame's message is removed, which
+     * recycles it, so obtainMessage() always finds one in the pool just as
+     * it would once the UI thread has handled the previous frame's.  Runs
+     * on its own thread so the test thread is left without a looper.
+     */
+    public void testDrawWithHandlerDoesNotAllocate() throws Exception {
+        final int[] allocations = new int[] {-1};
+        final Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Looper.prepare();
+                    Handler handler = new Handler();
+                    mDrawView.setmHandlerUI(handler);
+                    allocations[0] = countAllocations(handler);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw new Exception("drawing thread failed", failure[0]);
+        }
+        assertEquals("allocations during " + FRAMES + " frames, with a handler", 0, allocations[0]);
+    }
+
+    /**
+     * @param handler Handler set on the view, or null.
+     * @return Allocations on this thread while drawing FRAMES frames.
+     */
+    private int countAllocations(Handler handler) {
+        mDrawView.setmSquaresDrawnFromIndex(3);
+
+        // first frame is allowed to warm up anything lazily created by the framework.
+        drawFrame(handler);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < FRAMES; i++) {
+            if ((i & 1) == 0) {
+                mDrawView.disableAllSquares();
+            } else {
+                mDrawView.setmSquaresDrawnFromIndex(i % 8);
+            }
+            drawFrame(handler);
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return allocations;
+    }
+
+    private void drawFrame(Handler handler) {
+        mDrawView.draw(mCanvas);
+        if (handler != null) {
+            assertTrue(handler.hasMessages(GameActivity.MSG_TYPE_DRAWING_DONE));
+            handler.removeMessages(GameActivity.MSG_TYPE_DRAWING_DONE);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+
+import com.gyrovague.dualnback.MediaPlayerPool;
+import com.gyrovague.dualnback.R;
+
+/**
+ * @author asimihsan
+ *
+ */
+@MediumTest
+public class MediaPlayerPoolTests extends AndroidTestCase {
+    private static final int CAPACITY = 3;
+
+    private MediaPlayerPool mPool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPool = new MediaPlayerPool(getContext(), CAPACITY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPool.releaseAll();
+        super.tearDown();
+    }
+
+    public void testHitsAndMisses() throws Exception {
+        MediaPlayerPool.Entry first = mPool.acquire(R.raw.c);
+        assertSame(first, mPool.acquire(R.raw.c));
+        mPool.acquire(R.raw.h);
+        mPool.acquire(R.raw.c);
+
+        assertEquals(2, mPool.getHits());
+        assertEquals(2, mPool.getMisses());
+        assertEquals(0, mPool.getEvictions());
+        assertEquals(2, mPool.size());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        MediaPlayerPool.Entry c = mPool.acquire(R.raw.c);
+        MediaPlayerPool.Entry h = mPool.acquire(R.raw.h);
+        MediaPlayerPool.Entry k = mPool.acquire(R.raw.k);
+
+        // touch c, so h is now the least recently used.
+        mPool.acquire(R.raw.c);
+        MediaPlayerPool.Entry l = mPool.acquire(R.raw.l);
+        assertTrue(h.isReleased());
+        assertFalse(c.isReleased());
+        assertFalse(k.isReleased());
+        assertFalse(l.isReleased());
+        assertEquals(CAPACITY, mPool.size());
+        assertEquals(1, mPool.getEvictions());
+
+        // then k, the oldest untouched.
+        mPool.acquire(R.raw.q);
+        assertTrue(k.isReleased());
+        assertFalse(c.isReleased());
+        assertEquals(2, mPool.getEvictions());
+
+        // an evicted consonant is a miss, and gets a new player.
+        MediaPlayerPool.Entry h_again = mPool.acquire(R.raw.h);
+        assertNotSame(h, h_again);
+        assertFalse(h_again.isReleased());
+        assertEquals(1, mPool.getHits());
+        assertEquals(6, mPool.getMisses());
+        assertEquals(3, mPool.getEvictions());
+        assertEquals(CAPACITY, mPool.size());
+    }
+
+    public void testReleaseAll() throws Exception {
+        MediaPlayerPool.Entry c = mPool.acquire(R.raw.c);
+        MediaPlayerPool.Entry h = mPool.acquire(R.raw.h);
+        mPool.releaseAll();
+        assertTrue(c.isReleased());
+        assertTrue(h.isReleased());
+        assertEquals(0, mPool.size());
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import java.math.BigInteger;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import ec.util.MersenneTwister;
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Jumping J words ahead must land where calling nextInt() J times does.
+ * Below 19937 words the jump polynomial is just x^(J-1), so short jumps
+ * can be checked against stepping; jump() itself uses the published
+ * polynomial for 2^128 through the same code.
+ *
+ * @author asimihsan
+ *
+ */
+@SmallTest
+public class MersenneTwisterJumpTests extends AndroidTestCase {
+    private static final int[] JUMPS = new int[] {1, 2, 623, 624, 625, 1000};
+    private static final int[] PRE_STEPS = new int[] {0, 1, 623, 700};
+    private static final int COMPARED = 2000;
+
+    public void testJumpMatchesSteppingFast() throws CloneNotSupportedException {
+        for (int words : JUMPS) {
+            for (int pre_steps : PRE_STEPS) {
+                MersenneTwisterFast stepped = new MersenneTwisterFast(new int[] {words, pre_steps});
+                for (int i = 0; i < pre_steps; i++) {
+                    stepped.nextInt();
+                }
+                MersenneTwisterFast jumped = (MersenneTwisterFast) stepped.clone();
+                for (int i = 0; i < words; i++) {
+                    stepped.nextInt();
+                }
+                jumped.jump(polynomial(words));
+                for (int i = 0; i < COMPARED; i++) {
+                    assertEquals("J = " + words + ", after " + pre_steps + ", draw " + i, stepped.nextInt(), jumped.nextInt());
+                }
+            }
+        }
+    } // public void testJumpMatchesSteppingFast()
+
+    public void testJumpMatchesStepping() throws CloneNotSupportedException {
+        for (int words : JUMPS) {
+            for (int pre_steps : PRE_STEPS) {
+                MersenneTwister stepped = new MersenneTwister(new int[] {words, pre_steps});
+                for (int i = 0; i < pre_steps; i++) {
+                    stepped.nextInt();
+                }
+                MersenneTwister jumped = (MersenneTwister) stepped.clone();
+                for (int i = 0; i < words; i++) {
+                    stepped.nextInt();
+                }
+                jumped.jump(polynomial(words));
+                for (int i = 0; i < COMPARED; i++) {
+                    assertEquals("J = " + words + ", after " + pre_steps + ", draw " + i, stepped.nextInt(), jumped.nextInt());
+                }
+            }
+        }
+    } // public void testJumpMatchesStepping()
+
+    /**
+     * split() hands out the current position and jumps the parent, so the
+     * k-th split starts k - 1 jumps from the seed; both classes agree.
+     */
+    public void testSplit() {
+        MersenneTwisterFast parent = new MersenneTwisterFast(7);
+        MersenneTwisterFast first = parent.split();
+        MersenneTwisterFast second = parent.split();
+        MersenneTwisterFast expected_first = new MersenneTwisterFast(7);
+        MersenneTwisterFast expected_second = new MersenneTwisterFast(7);
+        expected_second.jump();
+        MersenneTwister synced = new MersenneTwister(7);
+        synced.jump();
+        for (int i = 0; i < COMPARED; i++) {
+            assertEquals("first, draw " + i, expected_first.nextInt(), first.nextInt());
+            int value = second.nextInt();
+            assertEquals("second, draw " + i, expected_second.nextInt(), value);
+            assertEquals("synchronized, draw " + i, synced.nextInt(), value);
+        }
+    }
+
+    /**
+     * @return x^(words - 1) as hex; already reduced while words < 19937.
+     */
+    private static String polynomial(int words) {
+        return BigInteger.ONE.shiftLeft(words - 1).toString(16);
+    }
+
+}
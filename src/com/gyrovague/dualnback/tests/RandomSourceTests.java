@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.util.Log;
+
+import com.gyrovague.dualnback.BlockGenerator;
+import com.gyrovague.dualnback.GameConfig;
+import com.gyrovague.dualnback.StimulusHistory;
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+import com.gyrovague.dualnback.random.MersenneTwisterSource;
+import com.gyrovague.dualnback.random.RandomSource;
+
+/**
+ * Both Mersenne Twister sources must give the same blocks for the same
+ * seed, so day plans replay whichever one generated them.  Also times block
+ * generation with each; as in StimulusHistoryTests, the timing is logged
+ * rather than asserted.
+ *
+ * @author asimihsan
+ *
+ */
+@MediumTest
+public class RandomSourceTests extends AndroidTestCase {
+    private static final String TAG = "RandomSourceTests";
+    private static final int N_INTERVAL = 3;
+    private static final int BLOCKS = 2000;
+    private static final int[] SEED = new int[] {0x1234, 0x5678, N_INTERVAL};
+
+    private BlockGenerator mGenerator;
+    private StimulusHistory mHistory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mGenerator = new BlockGenerator(GameConfig.DEFAULT, 8, 8);
+        mHistory = new StimulusHistory(mGenerator.getBlockLength(N_INTERVAL));
+    }
+
+    public void testSourcesAgree() {
+        RandomSource synced = new MersenneTwisterSource(SEED);
+        RandomSource fast = new MersenneTwisterFastSource(SEED);
+        for (int i = 0; i < 10000; i++) {
+            int n = 1 + (i % 100);
+            assertEquals("nextInt(" + n + ") draw " + i, synced.nextInt(n), fast.nextInt(n));
+        }
+        int[] synced_values = new int[1000];
+        int[] fast_values = new int[1000];
+        synced.fillInts(synced_values, 0, synced_values.length, 7);
+        fast.fillInts(fast_values, 0, fast_values.length, 7);
+        for (int i = 0; i < synced_values.length; i++) {
+            assertEquals("fillInts() value " + i, synced_values[i], fast_values[i]);
+            assertTrue((fast_values[i] >= 0) && (fast_values[i] < 7));
+        }
+        for (int i = 0; i < 1000; i++) {
+            int except = i % 8;
+            int value = fast.nextIntExcept(8, except);
+            assertEquals("nextIntExcept() draw " + i, synced.nextIntExcept(8, except), value);
+            assertTrue(value != except);
+        }
+        assertEquals(synced.nextLong(), fast.nextLong());
+        assertEquals(synced.nextDouble(), fast.nextDouble());
+    }
+
+    public void testBlockGenerationSpeed() {
+        // warm up both paths before timing either.
+        long synced_checksum = timeBlocks(new MersenneTwisterSource(SEED), BLOCKS / 10);
+        long fast_checksum = timeBlocks(new MersenneTwisterFastSource(SEED), BLOCKS / 10);
+
+        long start = System.nanoTime();
+        synced_checksum = timeBlocks(new MersenneTwisterSource(SEED), BLOCKS);
+        long synced_nanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        fast_checksum = timeBlocks(new MersenneTwisterFastSource(SEED), BLOCKS);
+        long fast_nanos = System.nanoTime() - start;
+
+        Log.i(TAG, "block generation, ns/block: MersenneTwister " + (1.0 * synced_nanos / BLOCKS) +
+              ", MersenneTwisterFast " + (1.0 * fast_nanos / BLOCKS));
+        assertEquals(synced_checksum, fast_checksum);
+    }
+
+    private long timeBlocks(RandomSource rng, int blocks) {
+        long checksum = 0;
+        for (int i = 0; i < blocks; i++) {
+            mGenerator.generate(rng, N_INTERVAL, mHistory);
+            for (int trial = 0; trial < mHistory.size(); trial++) {
+                checksum = checksum * 31 + mHistory.getVisual(trial) * 8 + mHistory.getAudio(trial);
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package com.gyrovague.dualnback.tests;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.util.Log;
+
+import com.gyrovague.dualnback.Guess;
+import com.gyrovague.dualnback.StimulusHistory;
+
+/**
+ * Checks StimulusHistory against the ArrayList<Integer> pair it replaced in
+ * GameManager, and times the n-back lookup of both.  JMH does not run on
+ * the device, so the timing is a plain warmed-up loop whose results are
+ * logged rather than asserted.
+ *
+ * @author asimihsan
+ *
+ */
+@MediumTest
+public class StimulusHistoryTests extends AndroidTestCase {
+    private static final String TAG = "StimulusHistoryTests";
+    private static final int BLOCK_LENGTH = 23;
+    private static final int N_INTERVAL = 2;
+    private static final int ITERATIONS = 200000;
+
+    private ArrayList<Integer> mListVisual;
+    private ArrayList<Integer> mListAudio;
+    private StimulusHistory mHistory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Random random = new Random(42);
+        mListVisual = new ArrayList<Integer>(BLOCK_LENGTH);
+        mListAudio = new ArrayList<Integer>(BLOCK_LENGTH);
+        mHistory = new StimulusHistory(BLOCK_LENGTH);
+        for (int i = 0; i < BLOCK_LENGTH; i++) {
+            int visual = random.nextInt(StimulusHistory.MAX_STIMULUS + 1);
+            int audio = random.nextInt(StimulusHistory.MAX_STIMULUS + 1);
+            mListVisual.add(visual);
+            mListAudio.add(audio);
+            mHistory.add(visual, audio);
+        }
+    } // protected void setUp() throws Exception
+
+    public void testCapacityIsPowerOfTwo() {
+        assertEquals(32, mHistory.getCapacity());
+        assertEquals(BLOCK_LENGTH, mHistory.size());
+    }
+
+    public void testMatchesLists() {
+        for (int trial = 0; trial < BLOCK_LENGTH; trial++) {
+            assertEquals(mListVisual.get(trial).intValue(), mHistory.getVisual(trial));
+            assertEquals(mListAudio.get(trial).intValue(), mHistory.getAudio(trial));
+        }
+        for (int trial = N_INTERVAL; trial < BLOCK_LENGTH; trial++) {
+            assertEquals("trial " + trial, listMatches(trial), mHistory.getMatches(trial, N_INTERVAL));
+        }
+    }
+
+    public void testCopyFromReusesStorage() {
+        StimulusHistory copy = new StimulusHistory(64);
+        copy.copyFrom(mHistory);
+        assertEquals(64, copy.getCapacity());
+        assertEquals(mHistory.size(), copy.size());
+        for (int trial = N_INTERVAL; trial < BLOCK_LENGTH; trial++) {
+            assertEquals(mHistory.getMatches(trial, N_INTERVAL), copy.getMatches(trial, N_INTERVAL));
+        }
+    }
+
+    public void testLookupSpeed() {
+        // warm up both paths before timing either.
+        long list_checksum = timeLists(ITERATIONS / 10);
+        long history_checksum = timeHistory(ITERATIONS / 10);
+
+        long start = System.nanoTime();
+        list_checksum = timeLists(ITERATIONS);
+        long list_nanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        history_checksum = timeHistory(ITERATIONS);
+        long history_nanos = System.nanoTime() - start;
+
+        Log.i(TAG, "n-back lookup, ns/op: ArrayList<Integer> " + (1.0 * list_nanos / ITERATIONS) +
+              ", StimulusHistory " + (1.0 * history_nanos / ITERATIONS));
+        assertEquals(list_checksum, history_checksum);
+    }
+
+    private int listMatches(int trial) {
+        int matches = Guess.NONE;
+        if (mListVisual.get(trial).equals(mListVisual.get(trial - N_INTERVAL))) {
+            matches |= Guess.VISUAL;
+        }
+        if (mListAudio.get(trial).equals(mListAudio.get(trial - N_INTERVAL))) {
+            matches |= Guess.AUDIO;
+        }
+        return matches;
+    }
+
+    private long timeLists(int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += listMatches(N_INTERVAL + (i % (BLOCK_LENGTH - N_INTERVAL)));
+        }
+        return checksum;
+    }
+
+    private long timeHistory(int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += mHistory.getMatches(N_INTERVAL + (i % (BLOCK_LENGTH - N_INTERVAL)), N_INTERVAL);
+        }
+        return checksum;
+    }
+}
@@ -1,6 +1,7 @@
 package ec.util;
 
 import java.io.*;
+import java.nio.*;
 
 /**
  * <h3>MersenneTwister and MersenneTwisterFast</h3>
@@ -216,6 +217,79 @@ public class MersenneTwister extends java.util.Random implements Serializable, C
         stream.writeBoolean(__haveNextNextGaussian);
     }
 
+    /** Bytes used by readState(ByteBuffer) and writeState(ByteBuffer); also
+        the length of the stream form. */
+    public static final int STATE_BYTES = (N + 2 + 1) * 4 + 8 + 1;
+
+    /** Reads the entire state of the MersenneTwister RNG from STATE_BYTES
+        bytes at the buffer's position, advancing it.  The state array is
+        copied in one bulk get, so this suits frequent checkpoints and
+        mapped files.  Multi-byte values are in the buffer's byte order;
+        the default, big-endian, reads what writeState(DataOutputStream)
+        writes. */
+    synchronized public void readState(ByteBuffer buffer) {
+        if (buffer.remaining() < STATE_BYTES)
+            throw new BufferUnderflowException();
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(mt);
+        ints.get(mag01);
+        mti = ints.get();
+        buffer.position(buffer.position() + ints.position() * 4);
+        __nextNextGaussian = buffer.getDouble();
+        __haveNextNextGaussian = buffer.get() != 0;
+    }
+
+    /** Writes the entire state of the MersenneTwister RNG as STATE_BYTES
+        bytes at the buffer's position, advancing it; see readState(ByteBuffer).
+        With the default byte order the bytes are the same as
+        writeState(DataOutputStream)'s. */
+    synchronized public void writeState(ByteBuffer buffer) {
+        if (buffer.remaining() < STATE_BYTES)
+            throw new BufferOverflowException();
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(mt);
+        ints.put(mag01);
+        ints.put(mti);
+        buffer.position(buffer.position() + ints.position() * 4);
+        buffer.putDouble(__nextNextGaussian);
+        buffer.put((byte)(__haveNextNextGaussian ? 1 : 0));
+    }
+
+    /** Advances the generator 2^128 words, as if nextInt() had been called
+        that many times, at about the cost of 20000 calls.  Any pending
+        nextGaussian() value is discarded. */
+    synchronized public void jump() {
+        MersenneTwisterJump.jump(mt);
+        __haveNextNextGaussian = false;
+    }
+
+    /** Advances the generator J words, given the jump polynomial
+        x^(J-1) mod phi, where phi is the generator's characteristic
+        polynomial, as hex, most significant digit first.  For J up to
+        19937 the polynomial is just x^(J-1), a 1 followed by zero bits;
+        jump() is J = 2^128.  Any pending nextGaussian() value is
+        discarded. */
+    synchronized public void jump(String polynomial) {
+        MersenneTwisterJump.jump(mt, MersenneTwisterJump.parsePolynomial(polynomial));
+        __haveNextNextGaussian = false;
+    }
+
+    /** Returns a generator at this one's current position, and jumps this
+        one 2^128 words ahead.  Up to 2^128 words can be drawn from the
+        returned generator before it reaches this one, so k calls split one
+        seed into k reproducible, non-overlapping streams, e.g. one per
+        worker thread. */
+    synchronized public MersenneTwister split() {
+        MersenneTwister f;
+        try {
+            f = (MersenneTwister) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(); // we implement Cloneable
+        }
+        jump();
+        return f;
+    }
+
 
     /**
      * Constructor using the default seed.
@@ -1,5 +1,6 @@
 package ec.util;
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 /**
@@ -219,6 +220,79 @@ public class MersenneTwisterFast implements Serializable, Cloneable {
         stream.writeBoolean(__haveNextNextGaussian);
     }
 
+    /** Bytes used by readState(ByteBuffer) and writeState(ByteBuffer); also
+        the length of the stream form. */
+    public static final int STATE_BYTES = (N + 2 + 1) * 4 + 8 + 1;
+
+    /** Reads the entire state of the MersenneTwister RNG from STATE_BYTES
+        bytes at the buffer's position, advancing it.  The state array is
+        copied in one bulk get, so this suits frequent checkpoints and
+        mapped files.  Multi-byte values are in the buffer's byte order;
+        the default, big-endian, reads what writeState(DataOutputStream)
+        writes. */
+    public void readState(ByteBuffer buffer) {
+        if (buffer.remaining() < STATE_BYTES)
+            throw new BufferUnderflowException();
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(mt);
+        ints.get(mag01);
+        mti = ints.get();
+        buffer.position(buffer.position() + ints.position() * 4);
+        __nextNextGaussian = buffer.getDouble();
+        __haveNextNextGaussian = buffer.get() != 0;
+    }
+
+    /** Writes the entire state of the MersenneTwister RNG as STATE_BYTES
+        bytes at the buffer's position, advancing it; see readState(ByteBuffer).
+        With the default byte order the bytes are the same as
+        writeState(DataOutputStream)'s. */
+    public void writeState(ByteBuffer buffer) {
+        if (buffer.remaining() < STATE_BYTES)
+            throw new BufferOverflowException();
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(mt);
+        ints.put(mag01);
+        ints.put(mti);
+        buffer.position(buffer.position() + ints.position() * 4);
+        buffer.putDouble(__nextNextGaussian);
+        buffer.put((byte)(__haveNextNextGaussian ? 1 : 0));
+    }
+
+    /** Advances the generator 2^128 words, as if nextInt() had been called
+        that many times, at about the cost of 20000 calls.  Any pending
+        nextGaussian() value is discarded. */
+    public void jump() {
+        MersenneTwisterJump.jump(mt);
+        __haveNextNextGaussian = false;
+    }
+
+    /** Advances the generator J words, given the jump polynomial
+        x^(J-1) mod phi, where phi is the generator's characteristic
+        polynomial, as hex, most significant digit first.  For J up to
+        19937 the polynomial is just x^(J-1), a 1 followed by zero bits;
+        jump() is J = 2^128.  Any pending nextGaussian() value is
+        discarded. */
+    public void jump(String polynomial) {
+        MersenneTwisterJump.jump(mt, MersenneTwisterJump.parsePolynomial(polynomial));
+        __haveNextNextGaussian = false;
+    }
+
+    /** Returns a generator at this one's current position, and jumps this
+        one 2^128 words ahead.  Up to 2^128 words can be drawn from the
+        returned generator before it reaches this one, so k calls split one
+        seed into k reproducible, non-overlapping streams, e.g. one per
+        worker thread. */
+    public MersenneTwisterFast split() {
+        MersenneTwisterFast f;
+        try {
+            f = (MersenneTwisterFast) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(); // we implement Cloneable
+        }
+        jump();
+        return f;
+    }
+
     /**
      * Constructor using the default seed.
      */
@@ -1052,6 +1126,93 @@ public class MersenneTwisterFast implements Serializable, Cloneable {
     }
 
 
+    /** Fills values[offset .. offset+length-1] with integers drawn uniformly
+        from 0 to n-1, n > 0.  Uses Lemire's multiply-shift with rejection
+        rather than nextInt(n)'s division, and regenerates the state once
+        per 624 words instead of checking for it per value, so a batch is
+        much cheaper than a nextInt(n) loop.  It does not draw the same
+        values nextInt(n) would. */
+    public final void fillInts(final int[] values, final int offset, final int length, final int n) {
+        if (n<=0)
+            throw new IllegalArgumentException("n must be > 0");
+
+        final long bound = n;
+        final long threshold = 0x100000000L % bound;  // 2^32 mod n words would bias the result
+        final int end = offset + length;
+        int x = offset;
+        while (x < end) {
+            if (mti >= N)
+                refill();
+            final int[] mt = this.mt; // locals are slightly faster
+            int i = mti;
+            while (i < N && x < end) {
+                int y = mt[i++];
+                y ^= y >>> 11;                          // TEMPERING_SHIFT_U(y)
+                y ^= (y << 7) & TEMPERING_MASK_B;       // TEMPERING_SHIFT_S(y)
+                y ^= (y << 15) & TEMPERING_MASK_C;      // TEMPERING_SHIFT_T(y)
+                y ^= (y >>> 18);                        // TEMPERING_SHIFT_L(y)
+
+                final long m = (y & 0xFFFFFFFFL) * bound;
+                if ((m & 0xFFFFFFFFL) >= threshold)
+                    values[x++] = (int)(m >>> 32);
+            }
+            mti = i;
+        }
+    }
+
+
+    /** Returns an integer drawn uniformly from 0 to n-1 other than except,
+        with a single bounded draw.  n must be > 1 and except in 0 .. n-1.
+        Draws the same way as fillInts. */
+    public final int nextIntExcept(final int n, final int except) {
+        if (n<=1)
+            throw new IllegalArgumentException("n must be > 1");
+        if (except<0 || except>=n)
+            throw new IllegalArgumentException("except must be in 0 .. n-1");
+
+        final long bound = n - 1;
+        final long threshold = 0x100000000L % bound;
+        long m;
+        do {
+            if (mti >= N)
+                refill();
+            int y = mt[mti++];
+            y ^= y >>> 11;                          // TEMPERING_SHIFT_U(y)
+            y ^= (y << 7) & TEMPERING_MASK_B;       // TEMPERING_SHIFT_S(y)
+            y ^= (y << 15) & TEMPERING_MASK_C;      // TEMPERING_SHIFT_T(y)
+            y ^= (y >>> 18);                        // TEMPERING_SHIFT_L(y)
+
+            m = (y & 0xFFFFFFFFL) * bound;
+        } while ((m & 0xFFFFFFFFL) < threshold);
+
+        final int val = (int)(m >>> 32);
+        return (val >= except) ? val + 1 : val;
+    }
+
+
+    /** Generates the next N words.  The single-value methods inline this;
+        the bulk ones call it once per N words, where a call is free. */
+    private void refill() {
+        int y;
+        int kk;
+        final int[] mt = this.mt; // locals are slightly faster
+        final int[] mag01 = this.mag01; // locals are slightly faster
+
+        for (kk = 0; kk < N - M; kk++) {
+            y = (mt[kk] & UPPER_MASK) | (mt[kk+1] & LOWER_MASK);
+            mt[kk] = mt[kk+M] ^ (y >>> 1) ^ mag01[y & 0x1];
+        }
+        for (; kk < N-1; kk++) {
+            y = (mt[kk] & UPPER_MASK) | (mt[kk+1] & LOWER_MASK);
+            mt[kk] = mt[kk+(M-N)] ^ (y >>> 1) ^ mag01[y & 0x1];
+        }
+        y = (mt[N-1] & UPPER_MASK) | (mt[0] & LOWER_MASK);
+        mt[N-1] = mt[M-1] ^ (y >>> 1) ^ mag01[y & 0x1];
+
+        mti = 0;
+    }
+
+
     /**
      * Tests the code.
      */
@@ -1097,6 +1258,26 @@ public class MersenneTwisterFast implements Serializable, Cloneable {
             xx += r.nextInt();
         System.out.println("Mersenne Twister Fast: " + (System.currentTimeMillis()-ms) + "          Ignore this: " + xx);
 
+        System.out.println("\nTime to test grabbing 100000000 ints from 0 to 7");
+
+        r = new MersenneTwisterFast(SEED);
+        ms = System.currentTimeMillis();
+        xx=0;
+        for (j = 0; j < 100000000; j++)
+            xx += r.nextInt(7);
+        System.out.println("nextInt(7): " + (System.currentTimeMillis()-ms) + "          Ignore this: " + xx);
+
+        r = new MersenneTwisterFast(SEED);
+        int[] batch = new int[1000];
+        ms = System.currentTimeMillis();
+        xx=0;
+        for (j = 0; j < 100000000; j += batch.length) {
+            r.fillInts(batch, 0, batch.length, 7);
+            for (int k = 0; k < batch.length; k++)
+                xx += batch[k];
+        }
+        System.out.println("fillInts(7), 1000 at a time: " + (System.currentTimeMillis()-ms) + "          Ignore this: " + xx);
+
         // TEST TO COMPARE TYPE CONVERSION BETWEEN
         // MersenneTwisterFast.java AND MersenneTwister.java
 
@@ -0,0 +1,168 @@
+package ec.util;
+
+/**
+ * Jump-ahead for MersenneTwister and MersenneTwisterFast, after Haramoto,
+ * Matsumoto, Nishimura, Panneton and L'Ecuyer, "Efficient Jump Ahead for
+ * F2-Linear Random Number Generators", INFORMS Journal on Computing 20(3),
+ * 2008.
+ *
+ * <p>MT19937 steps its 19937-bit state with a fixed linear map T over GF(2).
+ * If phi is the characteristic polynomial of T, then T^J = p(T) where
+ * p(x) = x^J mod phi, so the state J words ahead is the sum of the states
+ * 0 .. 19936 words ahead whose terms have p's coefficient set: 19937 single
+ * steps and about 10000 624-word XORs, instead of J steps.
+ *
+ * <p>The state is the last 624 words generated, of which only the top bit
+ * of the oldest counts.  The sum is done for J - 1 and then one more word
+ * is generated, so that every word of the result is exact; the pending
+ * words the generator has yet to output are then just the jumped words at
+ * the same positions, and mti is unchanged.
+ *
+ * <p>JUMP_POLYNOMIAL is x^(2^128 - 1) mod phi, as hex, with bit i the
+ * coefficient of x^i.  phi was found by running Berlekamp-Massey over
+ * 2 * 19937 output bits; jumps by small J built the same way have been
+ * checked against stepping the generator J times.
+ */
+final class MersenneTwisterJump {
+    private static final int N = 624;
+    private static final int M = 397;
+    private static final int MATRIX_A = 0x9908b0df;
+    private static final int UPPER_MASK = 0x80000000;
+    private static final int LOWER_MASK = 0x7fffffff;
+
+    /** log2 of the stride of jump(): 2^128 words. */
+    static final int JUMP_LOG2 = 128;
+
+    private static final String JUMP_POLYNOMIAL =
+        "111f7722bc05250778a8d296575b2b96b39c7a105cb1409dcd09e8494b9ed307" +
+        "21d9103f441e8a2de58649699043916bfd22626efbbae106b3f6092940cf0d3a" +
+        "6b1ce5831af59b076466b7432ff8eaf01efd1430fca87d560d3255b998b2bcae" +
+        "15c151683981d66822d511823d9acdeaf14d1f7383b2020d573cf21ad4729ff9" +
+        "2a4ef617a76d7659b89672fea43e98f9c86f95b11090802dca946352559e9eb3" +
+        "78396cdbd8a5bfb446533f3ff76e31336d9ae647c3e4311952a9f19fbf23ced3" +
+        "a5cbf95853962dabf9c64642e5b1e697bf4c68501453efd7ebaa532519f3662c" +
+        "54466fdf8c0b6bfa175d5ec3c3836924ac71316c48faf0245a5be353dc817fea" +
+        "0cabcfc7c5143ce2942fedf243c3dc45569e1669f5e5b35098c06d87487314aa" +
+        "f8b80eec6b1b3028cf6b9f71936cd3e5f33ad7cdeb818450a583c5118b2b0360" +
+        "61e42869e37f5ac9ea06cfedf3715bed442f753c027cff882445987480f76263" +
+        "9ed1b39c6c202da570823f012d42433181e79541c0ddd7e3a6660af2392a31d3" +
+        "7499601c77e33505484affe65a9a8b971c96861e2da09904811951ad90618f64" +
+        "2089d6b78d8acc3f6c2328cd10e6fd35e6dfdf5c998160b3080b12192d5ea711" +
+        "2b1f669d948193d132e017a3fa1aeb89c3e82d991f7b22eeb7c66a4d843ff4b9" +
+        "ab00f163adcfb8018e76cfd1c3e8c43325bcb67b803620602e3d0c98d1e0f288" +
+        "d753302a4df473b00bd3d9ddd394ab23f31efe5019b1b82851d0bdbecc5142e0" +
+        "3451fe95350cdb3f90953cb1020e1ca646e669b5ef72454931f2b98ca4225b39" +
+        "9c728800372a87edd1d96c5d1172e10bf7d4c918dd8956412acc78ce6fd647fd" +
+        "e4da0a670a32f96fc6b2b416d8351433c41f3ff2451ecc3dc0fc43ee8ab2b665" +
+        "22e15aa056c46e41662c83f8de699c39e0092a0e5639c6923932bd1c2d2d1287" +
+        "09a01616ecc39e190d1db990fcb27c288dd00b418118f8873ec35f63d3f113db" +
+        "5ae91346c82a019203d92b47715eb8267c164de3c8bda6a167e17fa5312488ab" +
+        "61ce35c0e1f1e42b0af46ab0cb0482b30c8aaa9c48a8fe802aa45527330b337a" +
+        "8f4e027441e843f112226ace8aeda5e35b4839a8cbfadd3cb856e0c5b46bb1d4" +
+        "62de250c45b14021f02e4315423638a54a04da83ec356d23876a35c9c4a63764" +
+        "69b5428eed932bd2c4e7300f179860674ccc7257ff6fc7895c2ca0a2d454a277" +
+        "ce923abda1048e72644c88a6f416baa6911c3ae7be5800c493917818bd7ff009" +
+        "58eed3a0ba31e84b57288847786f589c61cc58ac03503592e32461ab85141def" +
+        "b72caf5e0bcb3b73d58f69f0be84a2d8de0acbf506f4c50baa3481b252220abf" +
+        "90777c0dfe8c665af576144efec7f48b79e2e5caad702b2095f17c03a43e5f9e" +
+        "4a2f5aa9cfcfa0fa0fc287bfb22401c32f2fe51e6e2c77142140c80e37262ea7" +
+        "e7d9432631ae37705b2c39d83738b2807324f3c2c2079b0df9a7f40bcdb930d2" +
+        "fc93f011dda6e9819415fd6112e3632a64369991dedcefa83ed9e95613a5c28f" +
+        "23042e7d983e9c6bfca4a1e03a2ba35e17349682c625f19ee9539d0d0dd8199a" +
+        "f0b36160da1271cce6fe5312cde23fe6fc832d7a77ebb4b31b4af690ff945c43" +
+        "31f76956b628933f4ef03b0d3754e52d1863153ab506dffcf23d191af40b7a99" +
+        "e29620b33cde39291fc33716d4e6af6557279064e08dace2b0211130730f0735" +
+        "f411815a3c213c0b261b75c1e974244fcaf5addba17180368d488d56edfb49d6" +
+        "b57a024f814620c37ab0413ff0038e5cbc5f2ba863f3bf06d6fe6a43e780512a" +
+        "d067562e4f83adc5c76c24b9e6778891f0a564a962432157f43805b91ba9e0e5" +
+        "41e0882b1427331e2473627b9304e5001c7fdcaf51085695fe1b280bd17dd02f" +
+        "6e064327c62a13f0442e1cd903fe29b483c4856ef6251c4c64c02e3d6b30ac50" +
+        "f036c8562b99b82b453e58554dbea3e21402291f8d91e1576faf5f3f9e8a132e" +
+        "a26405e214b36384f526bfc27a94ff74e84c42132dee467d167d7ad1f529d495" +
+        "20066622155429c1c39c6fe155cba4b33dabafc4c9d16141013032ee0c0b3852" +
+        "bd1a860772a1c256a585b7b31254fd021343157bdfc5c74b74b002523db00dd9" +
+        "40247bbb6d58e8612c0ff4799040299e0107c7a70015a604ac9bb3863a6bcd17" +
+        "447ca81ff5604461811a67065a3e887198a17ee2e3943009baaf188dddc31a35" +
+        "a9b38172fe534460705962b40a68b1c30f3e7a35a44893452ddc622a2fcc811f" +
+        "1753cca5d4b288c6a611af8b6449ed27743e0d4af8d9975cbebbbf81c827c76c" +
+        "309e7fd97b8b60d70fff5aa9c3ecc10562eb4a01205eee43efe8d218df662e5b" +
+        "2ca934a476cc653bcc9a30ee5d686528c1e76b52d8c885d9ca3dac965be24f3d" +
+        "228de9ac6a4dc759893637cfa1187366cb0151d0a77e34302e215284723167fd" +
+        "e19ddcc9488848720c635d3a46c8eae99ae61426a5f5dc053d6a904822de030b" +
+        "a1e6eef2f44bbaa6c38db4ac9449371c79c1847ac6f8a0991a1ae3ae3e185f72" +
+        "dcb1d1b0954990d6ed12a7216dae18764cb623a48ee4004368a20e4e19ab777b" +
+        "c48e1459caa3add677fd5a17edb8e545b8fb9588d287d3c05b90b0880258019c" +
+        "0079220e77e7d86716313fcf956bccb142ff4a889eb84123fec86b70aa3efeb4" +
+        "ffa3b2d80ae3bb3bde791679ddbe9b3bacfa08b254a8b8bcb64e51dfb5e56b49" +
+        "fc1a74043a93ee0d4b0f3d578941aca3927d304f944c9577e9db055ba78fd3bc" +
+        "d395aac19405aa9ac36b557db320f576de662414a3fae7518f99589f833f5c87" +
+        "1855262644da2dc81a4ebc6e1dfa4dc0af0c8553f9060684b01d121b55f1419c" +
+        "abe5bc0b365ee53791db8176bf5fdb0f8d9a210689630c6a74eb08b5de2c479c" +
+        "b7909d4dad726c74b6734569cd9639482eae337e1d20a4e8e67dd24cbfa9dedf" +
+        "6d3d2c2c1252c206cd945e44ed21b4ba8efd63943df67fc596e91f736b020b45" +
+        "7421398e394c9672650e785a06b6f4074e45041210e84782acba5603352463bb" +
+        "c525c61f6c3c59911cdaf4d1d0fb5543e96266dc48dd08ac79f71e902e9fc292" +
+        "f489dcd4b1a0743f789986642b3f3a8f455e640612177744bcaf87dbdbc508a6" +
+        "49325660201f39e941002b875cc0caabfda793653a9445ac4eb5f42a30c96efc" +
+        "ce46566a23fc1416a39dae66c66a1a2ae129e0a4373ae4a8ccf23210c4ecbd76" +
+        "ae53570510ec2cc18ca1c6240df825e000fc8ef0a7a1ccab62b5e7e5e39e6d2f" +
+        "6bbb41dca67292428cab9d0ef43876cb4c0e4f32ce51f71bed95d9dfe787beb0" +
+        "7164dc294306efbd6ac2e87604754e7d5c7422174a3a0b0bbe7af9f2deb0e7f6" +
+        "9906fdbb0d9cdc7a177ae401dec42381daab0feac7869ef655c19a684cd7f7ab" +
+        "a71533ef328a3ee5f80dec133ff5e83de449d3e41e0c0a63d99aa422b04f5797" +
+        "457b098e9f4b69ce71f4945c185a424d5725856dcdf94096aa45af3ab45a90bb" +
+        "bf3fedd8a820f912c936c1f2cd411fc72c413cddb5ab84f62396f1cb1";
+
+    private static final int[] JUMP = parsePolynomial(JUMP_POLYNOMIAL);
+
+    private MersenneTwisterJump() {
+    }
+
+    /** Advances a generator's state array 2^128 words; mti is unchanged. */
+    static void jump(int[] mt) {
+        jump(mt, JUMP);
+    }
+
+    /** Advances a generator's state array J words, given
+        polynomial = x^(J - 1) mod phi as from parsePolynomial(). */
+    static void jump(int[] mt, int[] polynomial) {
+        final int[] window = mt.clone();
+        final int[] sum = new int[N];
+        int pos = 0;  // window[pos] is the oldest word
+        final int degree = polynomial.length * 32;
+        for (int i = 0; i < degree; i++) {
+            if ((polynomial[i >>> 5] & (1 << (i & 31))) != 0) {
+                int k = 0;
+                for (int j = pos; j < N; j++)
+                    sum[k++] ^= window[j];
+                for (int j = 0; j < pos; j++)
+                    sum[k++] ^= window[j];
+            }
+            pos = step(window, pos);
+        }
+
+        pos = step(sum, 0);
+        for (int k = 0; k < N; k++)
+            mt[k] = sum[(pos + k) % N];
+    }
+
+    /** Generates one word over the oldest, at pos, and returns the new oldest position. */
+    private static int step(int[] window, int pos) {
+        final int next = (pos + 1 == N) ? 0 : pos + 1;
+        final int y = (window[pos] & UPPER_MASK) | (window[next] & LOWER_MASK);
+        window[pos] = window[(pos + M) % N] ^ (y >>> 1) ^ ((y & 0x1) == 0 ? 0 : MATRIX_A);
+        return next;
+    }
+
+    /** Hex, most significant digit first, into little-endian 32-bit words. */
+    static int[] parsePolynomial(String hex) {
+        final int[] words = new int[(hex.length() + 7) / 8];
+        for (int digit = 0; digit < hex.length(); digit++) {
+            final int value = Character.digit(hex.charAt(hex.length() - 1 - digit), 16);
+            if (value < 0)
+                throw new IllegalArgumentException("not hex: " + hex.charAt(hex.length() - 1 - digit));
+            words[digit >>> 3] |= value << ((digit & 7) * 4);
+        }
+        return words;
+    }
+}
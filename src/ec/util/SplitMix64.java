@@ -0,0 +1,132 @@
+package ec.util;
+import java.io.*;
+
+/**
+ * <h3>SplitMix64</h3>
+ *
+ * <p>Steele, Lea and Flood's SplitMix64, as in java.util.SplittableRandom
+ * and Vigna's splitmix64.c: a 64-bit counter stepped by the golden gamma,
+ * each value scrambled by a variant of the MurmurHash3 finalizer.  Period
+ * 2^64, one long of state.  Not for simulations needing more than 2^64
+ * values or high-dimensional equidistribution, but ideal for seeding other
+ * generators (Xoshiro128PlusPlus seeds itself with it) and for hashing
+ * counters into seeds, which mix() does on its own.
+ *
+ * <p>Same public methods as MersenneTwisterFast where they make sense, and
+ * likewise not synchronized.  nextInt(n) uses Lemire's multiply-shift, as
+ * MersenneTwisterFast.fillInts() does.
+ *
+ * <p>Reference: Guy L. Steele Jr., Doug Lea and Christine H. Flood, "Fast
+ * Splittable Pseudorandom Number Generators", OOPSLA 2014.
+ */
+public class SplitMix64 implements Serializable, Cloneable {
+    private static final long serialVersionUID = 1L;
+
+    /** 2^64 / phi, odd: the step between states. */
+    public static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /** Seeds from the current time, like java.util.Random. */
+    public SplitMix64() {
+        this(System.currentTimeMillis());
+    }
+
+    public SplitMix64(final long seed) {
+        setSeed(seed);
+    }
+
+    public void setSeed(final long seed) {
+        state = seed;
+    }
+
+    public Object clone() throws CloneNotSupportedException {
+        return super.clone();
+    }
+
+    public boolean stateEquals(Object o) {
+        if (o==this) return true;
+        if (o == null || !(o instanceof SplitMix64))
+            return false;
+        return state == ((SplitMix64) o).state;
+    }
+
+    /** Reads the entire state of the generator from the stream */
+    public void readState(DataInputStream stream) throws IOException {
+        state = stream.readLong();
+    }
+
+    /** Writes the entire state of the generator to the stream */
+    public void writeState(DataOutputStream stream) throws IOException {
+        stream.writeLong(state);
+    }
+
+    /** The output function: scrambles z so that consecutive inputs give
+        unrelated outputs.  A bijection on longs. */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public final long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /** The upper 32 bits of nextLong(). */
+    public final int nextInt() {
+        return (int)(mix(state += GOLDEN_GAMMA) >>> 32);
+    }
+
+    /** Returns an integer drawn uniformly from 0 to n-1.  Suffice it to say,
+        n must be > 0, or an IllegalArgumentException is raised. */
+    public final int nextInt(final int n) {
+        if (n<=0)
+            throw new IllegalArgumentException("n must be > 0");
+
+        final long bound = n;
+        final long threshold = 0x100000000L % bound;
+        long m;
+        do {
+            m = (nextLong() >>> 32) * bound;
+        } while ((m & 0xFFFFFFFFL) < threshold);
+        return (int)(m >>> 32);
+    }
+
+    public final boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /** This generates a coin flip with a probability <tt>probability</tt>
+        of returning true, else returning false.  <tt>probability</tt> must
+        be between 0.0 and 1.0, inclusive. */
+    public final boolean nextBoolean(final double probability) {
+        if (probability < 0.0 || probability > 1.0)
+            throw new IllegalArgumentException ("probability must be between 0.0 and 1.0 inclusive.");
+        if (probability==0.0) return false;
+        if (probability==1.0) return true;
+        return nextDouble() < probability;
+    }
+
+    /** Returns a random double in the half-open range from [0.0,1.0). */
+    public final double nextDouble() {
+        return (nextLong() >>> 11) / (double)(1L << 53);
+    }
+
+    /** Returns a random float in the half-open range from [0.0f,1.0f). */
+    public final float nextFloat() {
+        return (nextLong() >>> 40) / ((float)(1 << 24));
+    }
+
+    /**
+     * Tests the code against the reference splitmix64.c.
+     */
+    public static void main(String args[]) {
+        SplitMix64 r = new SplitMix64(0);
+        long first = r.nextLong();
+        System.out.println("First output from seed 0: " + Long.toHexString(first) +
+                           (first == 0xe220a8397b1dcdafL ? " (correct)" : " (WRONG, expected e220a8397b1dcdaf)"));
+        for (int j = 0; j < 10; j++)
+            System.out.println(Long.toHexString(r.nextLong()));
+    }
+}
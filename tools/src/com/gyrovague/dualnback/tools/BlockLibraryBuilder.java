@@ -0,0 +1,110 @@
+/**
+ * Build-time generator for the block library.
+ */
+package com.gyrovague.dualnback.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.gyrovague.dualnback.BlockGenerator;
+import com.gyrovague.dualnback.BlockLibraryFormat;
+import com.gyrovague.dualnback.GameConfig;
+import com.gyrovague.dualnback.StimulusHistory;
+import com.gyrovague.dualnback.random.MersenneTwisterFastSource;
+import com.gyrovague.dualnback.random.RandomSource;
+
+/**
+ * Runs the game's BlockGenerator offline, with lure avoidance on, and keeps
+ * only blocks that validate: exact target counts, no lures, no duplicates.
+ * The pool for each N is bit-packed into the single asset read by
+ * com.gyrovague.dualnback.BlockLibrary, in BlockLibraryFormat's layout.
+ * Seeds are fixed, so the output is the same on every build.
+ *
+ * Usage: BlockLibraryBuilder &lt;output file&gt; &lt;blocks per N&gt; &lt;min N&gt; &lt;max N&gt;
+ *
+ * @author asimihsan
+ *
+ */
+public class BlockLibraryBuilder {
+    /**
+     * Must match GameManager.
+     */
+    private static final int NUM_SQUARES = 8;
+    private static final int NUM_CONSONANTS = 8;
+    private static final int SEED = 0x444e424c;
+    private static final int MAX_ATTEMPTS_PER_BLOCK = 1000;
+
+    private final GameConfig mConfig = GameConfig.DEFAULT;
+    private final BlockGenerator mGenerator = new BlockGenerator(mConfig, NUM_SQUARES, NUM_CONSONANTS, true);
+
+    public static void main(String args[]) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: BlockLibraryBuilder <output file> <blocks per N> <min N> <max N>");
+            System.exit(1);
+        }
+        int blocks = Integer.parseInt(args[1]);
+        int min_n = Integer.parseInt(args[2]);
+        int max_n = Integer.parseInt(args[3]);
+        if ((blocks < 1) || (min_n < 1) || (max_n < min_n)) {
+            System.err.println("Need blocks per N >= 1 and 1 <= min N <= max N");
+            System.exit(1);
+        }
+        new BlockLibraryBuilder().build(new File(args[0]), blocks, min_n, max_n);
+    }
+
+    private void build(File output, int blocks, int minN, int maxN) throws IOException {
+        int count = maxN - minN + 1;
+        int[] n_intervals = new int[count];
+        byte[][] pools = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            n_intervals[i] = minN + i;
+            pools[i] = buildPool(n_intervals[i], blocks, BlockLibraryFormat.getStride(mGenerator.getBlockLength(n_intervals[i])));
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            BlockLibraryFormat.write(out, mConfig, NUM_SQUARES, NUM_CONSONANTS, n_intervals, pools);
+        } finally {
+            out.close();
+        }
+        System.out.println("Built " + blocks + " blocks for N = " + minN + ".." + maxN + " into " + output +
+                           " (" + output.length() + " bytes)");
+    }
+
+    /**
+     * @return blocks validated blocks for N, each packed into stride bytes.
+     */
+    private byte[] buildPool(int n, int blocks, int stride) throws IOException {
+        RandomSource rng = new MersenneTwisterFastSource(new int[] {SEED, n});
+        StimulusHistory history = new StimulusHistory(mGenerator.getBlockLength(n));
+        Set<String> seen = new HashSet<String>();
+        byte[] pool = new byte[blocks * stride];
+        byte[] packed = new byte[stride];
+        int rejected = 0;
+        for (int block = 0; block < blocks; block++) {
+            int attempts = 0;
+            while (true) {
+                if (++attempts > MAX_ATTEMPTS_PER_BLOCK) {
+                    throw new IOException("Could not find " + blocks + " distinct valid blocks for N = " + n);
+                }
+                mGenerator.generate(rng, n, history);
+                Arrays.fill(packed, (byte) 0);
+                BlockLibraryFormat.pack(history, packed, 0);
+                if (BlockLibraryFormat.isValid(mConfig, history, n) && seen.add(new String(packed, "ISO-8859-1"))) {
+                    break;
+                }
+                rejected++;
+            }
+            System.arraycopy(packed, 0, pool, block * stride, stride);
+        }
+        System.out.println("N = " + n + ": " + blocks + " blocks, " + rejected + " rejected");
+        return pool;
+    }
+
+}
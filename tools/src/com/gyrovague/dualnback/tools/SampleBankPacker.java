@@ -0,0 +1,150 @@
+/**
+ * Build-time packer for the consonant sample bank.
+ */
+package com.gyrovague.dualnback.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+
+/**
+ * Packs a directory of decoded a.wav .. z.wav files into the single asset
+ * read by com.gyrovague.dualnback.SampleBank.  See that class for the layout.
+ *
+ * Usage: SampleBankPacker &lt;wav directory&gt; &lt;output file&gt;
+ *
+ * @author asimihsan
+ *
+ */
+public class SampleBankPacker {
+    private static final int MAGIC = 0x444e424b;    // "DNBK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int ENTRY_SIZE = 2 * 4;
+    private static final int LETTERS = 26;
+
+    private static final int RIFF = 0x52494646;  // "RIFF"
+    private static final int WAVE = 0x57415645;  // "WAVE"
+    private static final int FMT  = 0x666d7420;  // "fmt "
+    private static final int DATA = 0x64617461;  // "data"
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int BITS_PER_SAMPLE = 16;
+
+    private int mSampleRate;
+    private int mChannels;
+
+    public static void main(String args[]) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SampleBankPacker <wav directory> <output file>");
+            System.exit(1);
+        }
+        new SampleBankPacker().pack(new File(args[0]), new File(args[1]));
+    }
+
+    private void pack(File wavDirectory, File output) throws IOException {
+        byte[][] samples = new byte[LETTERS][];
+        for (int i = 0; i < LETTERS; i++) {
+            File wav = new File(wavDirectory, (char) ('a' + i) + ".wav");
+            if (wav.exists()) {
+                samples[i] = readPcm(wav);
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mSampleRate);
+            out.writeInt(mChannels);
+            out.writeInt(LETTERS);
+            int offset = HEADER_SIZE + LETTERS * ENTRY_SIZE;
+            for (int i = 0; i < LETTERS; i++) {
+                int length = (samples[i] == null) ? 0 : samples[i].length;
+                out.writeInt(offset);
+                out.writeInt(length);
+                offset += length;
+            }
+            for (int i = 0; i < LETTERS; i++) {
+                if (samples[i] != null) {
+                    out.write(samples[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        System.out.println("Packed " + wavDirectory + " into " + output + " (" + output.length() + " bytes)");
+    }
+
+    /**
+     * @return The little-endian PCM from a 16-bit RIFF/WAVE file.
+     */
+    private byte[] readPcm(File wav) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(wav)));
+        try {
+            if (in.readInt() != RIFF) {
+                throw new IOException(wav + " is not a RIFF file");
+            }
+            readLittleEndianInt(in);
+            if (in.readInt() != WAVE) {
+                throw new IOException(wav + " is not a WAVE file");
+            }
+
+            int sampleRate = 0;
+            int channels = 0;
+            while (true) {
+                int chunk = in.readInt();
+                int length = readLittleEndianInt(in);
+                if (chunk == FMT) {
+                    int format = readLittleEndianShort(in);
+                    channels = readLittleEndianShort(in);
+                    sampleRate = readLittleEndianInt(in);
+                    in.skipBytes(6);    // byte rate, block align
+                    int bits = readLittleEndianShort(in);
+                    if ((format != WAVE_FORMAT_PCM) || (bits != BITS_PER_SAMPLE)) {
+                        throw new IOException(wav + ": unsupported format " + format + "/" + bits);
+                    }
+                    in.skipBytes(length - 16);
+                } else if (chunk == DATA) {
+                    if (sampleRate == 0) {
+                        throw new IOException(wav + ": data chunk before fmt chunk");
+                    }
+                    checkFormat(wav, sampleRate, channels);
+                    byte[] pcm = new byte[length];
+                    in.readFully(pcm);
+                    return pcm;
+                } else {
+                    in.skipBytes(length + (length & 1));
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Every sample is played through one AudioTrack, so they must agree.
+     */
+    private void checkFormat(File wav, int sampleRate, int channels) throws IOException {
+        if (mSampleRate == 0) {
+            mSampleRate = sampleRate;
+            mChannels = channels;
+        } else if ((mSampleRate != sampleRate) || (mChannels != channels)) {
+            throw new IOException(wav + " is " + sampleRate + "Hz/" + channels
+                                  + ", expected " + mSampleRate + "Hz/" + mChannels);
+        }
+    }
+
+    private static int readLittleEndianInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static int readLittleEndianShort(DataInputStream in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xFFFF;
+    }
+
+}